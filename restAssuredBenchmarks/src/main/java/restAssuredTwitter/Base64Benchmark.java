@@ -0,0 +1,69 @@
+package restAssuredTwitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Подготовка картинки к отправке через POST media/upload.
+ *   encodeBase64String - Base64.encodeBase64String всего файла в параметр media_data, как ImagesUploadingTestSuite отправлял картинки раньше;
+ *   readChunks         - чтение файла частями по 1Мб в один буфер, как сейчас делает ChunkedMediaUploader (без кодирования).
+ * size - размеры картинок из ImagesUploadingTestSuite: чуть меньше 5Мб и чуть больше 8Мб.
+ * */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64Benchmark {
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	@Param({"5177344", "8454144"})
+	public int size;
+
+	private byte[] image;
+	private byte[] chunk;
+
+	@Setup
+	public void setUp()
+	{
+		image = new byte[size];
+		new Random(size).nextBytes(image);
+		chunk = new byte[CHUNK_SIZE];
+	}
+
+	@Benchmark
+	public String encodeBase64String()
+	{
+		return Base64.encodeBase64String(image);
+	}
+
+	@Benchmark
+	public long readChunks() throws IOException
+	{
+		long total = 0;
+		try(InputStream is = new ByteArrayInputStream(image)) {
+			int read;
+			while((read = is.read(chunk)) != -1)
+				total += read;
+		}
+		return total;
+	}
+}
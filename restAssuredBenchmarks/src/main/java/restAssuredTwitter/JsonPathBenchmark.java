@@ -0,0 +1,49 @@
+package restAssuredTwitter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.restassured.path.json.JsonPath;
+
+/*
+ * Получение id_str из ответа на создание или получение твита: response.jsonPath().get("id_str").
+ * response.jsonPath() создаёт новый JsonPath по телу ответа, поэтому каждый вызов заново разбирает весь JSON.
+ *   update - ответ на POST statuses/update;
+ *   show   - ответ на GET statuses/show для ретвита (вместе с retweeted_status).
+ * */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonPathBenchmark {
+	@Param({"update", "show"})
+	public String payload;
+
+	private String json;
+
+	@Setup
+	public void setUp()
+	{
+		json = "show".equals(payload) ? TweetPayloads.show() : TweetPayloads.update();
+	}
+
+	@Benchmark
+	public Object idStr()
+	{
+		return new JsonPath(json).get("id_str");
+	}
+}
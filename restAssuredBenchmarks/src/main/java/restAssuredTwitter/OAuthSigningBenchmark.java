@@ -0,0 +1,104 @@
+package restAssuredTwitter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.scribejava.core.builder.api.DefaultApi10a;
+import com.github.scribejava.core.model.OAuth1AccessToken;
+import com.github.scribejava.core.model.OAuth1RequestToken;
+import com.github.scribejava.core.model.OAuthConfig;
+import com.github.scribejava.core.model.OAuthRequest;
+import com.github.scribejava.core.model.SignatureType;
+import com.github.scribejava.core.model.Verb;
+import com.github.scribejava.core.oauth.OAuth10aService;
+
+/*
+ * Подпись запроса OAuth 1.0a в заголовке Authorization (OAuthSignature.HEADER).
+ * REST Assured подписывает каждый запрос перехватчиком AuthConfig.OAuthSigner, который для каждого запроса заново создаёт OAuth10aService
+ * из scribejava и подписывает им OAuthRequest с параметрами формы. Сам перехватчик - внутренний класс REST Assured,
+ * поэтому здесь повторяются те же вызовы scribejava:
+ *   signPerRequestService - как в REST Assured: сервис создаётся для каждого запроса;
+ *   signSharedService     - сервис создан заранее, измеряется только подпись (nonce, timestamp, base string, HMAC-SHA1).
+ * Ключи и токены фиктивные, но той же длины, что и настоящие.
+ * */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OAuthSigningBenchmark {
+	public static final String CONSUMER_KEY = "8hbTXXldjDQ8R4l2KMwFbench";
+	public static final String CONSUMER_SECRET = "6d2FFCmIY1JIW7znU5qlx8q98M73hNYwmhga98cIYPLZcbench";
+	public static final String ACCESS_TOKEN = "972978433641861120-o3lpfjVrvSjyqAxnJraV5fcIEahbench";
+	public static final String ACCESS_SECRET = "EqSAvvUfVdsPInU8kSJ3FSJg6bPOf4pRFjmuW4vuXlbench";
+
+	private static final String UPDATE_URL = "https://api.twitter.com/1.1/statuses/update.json";
+
+	private OAuth10aService sharedService;
+	private OAuth1AccessToken token;
+
+	@Setup
+	public void setUp()
+	{
+		sharedService = newService();
+		token = new OAuth1AccessToken(ACCESS_TOKEN, ACCESS_SECRET);
+	}
+
+	@Benchmark
+	public String signPerRequestService()
+	{
+		return sign(newService());
+	}
+
+	@Benchmark
+	public String signSharedService()
+	{
+		return sign(sharedService);
+	}
+
+	//POST statuses/update с одним параметром status, как в TweetTestSuite
+	private String sign(OAuth10aService service)
+	{
+		OAuthRequest request = new OAuthRequest(Verb.POST, UPDATE_URL, service);
+		request.addBodyParameter("status", TweetPayloads.text(0));
+		service.signRequest(token, request);
+		return request.getHeaders().get("Authorization");
+	}
+
+	//тот же сервис, что создаёт REST Assured: только ключи приложения и тип подписи, адреса получения токенов не нужны
+	private static OAuth10aService newService()
+	{
+		OAuthConfig config = new OAuthConfig(CONSUMER_KEY, CONSUMER_SECRET, null, SignatureType.Header, null, null, null, null, null, null, null);
+		return new OAuth10aService(new DefaultApi10a() {
+			@Override
+			public String getRequestTokenEndpoint()
+			{
+				return null;
+			}
+
+			@Override
+			public String getAccessTokenEndpoint()
+			{
+				return null;
+			}
+
+			@Override
+			public String getAuthorizationUrl(OAuth1RequestToken requestToken)
+			{
+				return null;
+			}
+		}, config);
+	}
+}
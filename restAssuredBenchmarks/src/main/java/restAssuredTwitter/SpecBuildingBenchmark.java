@@ -0,0 +1,73 @@
+package restAssuredTwitter;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.oauth;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.restassured.authentication.OAuthSignature;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
+
+/*
+ * Подготовка спецификации запроса до его отправки (без сети и без подписи):
+ *   givenAuthOauth      - given(spec).auth().oauth(...), как тест-кейсы собирали запрос раньше;
+ *   givenAccountSpec    - given(account.statusesSpec()), авторизация уже в спецификации (TwitterAccount);
+ *   buildAccountSpec    - построение самой спецификации аккаунта, в тестах выполняется один раз на аккаунт.
+ * */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpecBuildingBenchmark {
+	private RequestSpecification statusesSpec;
+	private RequestSpecification accountSpec;
+
+	@Setup
+	public void setUp()
+	{
+		statusesSpec = new RequestSpecBuilder().setBaseUri("https://api.twitter.com").setBasePath("/1.1/statuses").build();
+		accountSpec = buildAccountSpec();
+	}
+
+	@Benchmark
+	public RequestSpecification givenAuthOauth()
+	{
+		return given(statusesSpec).
+				auth().
+				oauth(OAuthSigningBenchmark.CONSUMER_KEY, OAuthSigningBenchmark.CONSUMER_SECRET, OAuthSigningBenchmark.ACCESS_TOKEN, OAuthSigningBenchmark.ACCESS_SECRET, OAuthSignature.HEADER).
+				param("status", TweetPayloads.text(0));
+	}
+
+	@Benchmark
+	public RequestSpecification givenAccountSpec()
+	{
+		return given(accountSpec).
+				param("status", TweetPayloads.text(0));
+	}
+
+	@Benchmark
+	public RequestSpecification buildAccountSpec()
+	{
+		return new RequestSpecBuilder().
+				addRequestSpecification(statusesSpec).
+				setAccept(ContentType.JSON).
+				setAuth(oauth(OAuthSigningBenchmark.CONSUMER_KEY, OAuthSigningBenchmark.CONSUMER_SECRET, OAuthSigningBenchmark.ACCESS_TOKEN, OAuthSigningBenchmark.ACCESS_SECRET, OAuthSignature.HEADER)).
+				build();
+	}
+}
@@ -0,0 +1,79 @@
+package restAssuredTwitter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import groovy.json.JsonSlurper;
+import groovy.lang.Closure;
+import groovy.lang.GroovyShell;
+import io.restassured.path.json.JsonPath;
+
+/*
+ * Поиск твита в ленте GET statuses/user_timeline (count=200) выражением GPath, как в TweetTestSuite:
+ *   find {it.text == '%s'}.id_str
+ * position - место искомого твита в ленте (0 - самый новый).
+ *   parseAndFind - разбор ответа и поиск, как при вызове response.jsonPath() в тест-кейсе;
+ *   findOnly     - поиск по уже созданному JsonPath;
+ *   compiledFind - поиск по разобранной ленте замыканием, скомпилированным один раз, текст передаётся параметром
+ *                  (так работает GPath в restAssuredTwitter), - JsonPath компилирует выражение заново на каждый вызов.
+ * */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineFindBenchmark {
+	private static final int TIMELINE_SIZE = 200;
+
+	@Param({"0", "100", "199"})
+	public int position;
+
+	private String timeline;
+	private JsonPath parsed;
+	private String searchRequest;
+	private Object slurped;
+	private Closure<?> compiled;
+	private String text;
+
+	@Setup
+	public void setUp()
+	{
+		timeline = TweetPayloads.timeline(TIMELINE_SIZE);
+		parsed = new JsonPath(timeline);
+		searchRequest = String.format("find {it.text == '%s'}.id_str", TweetPayloads.text(position));
+		slurped = new JsonSlurper().parseText(timeline);
+		compiled = (Closure<?>) new GroovyShell().evaluate("{ root, text -> root.find { it.text == text }?.id_str }");
+		text = TweetPayloads.text(position);
+	}
+
+	@Benchmark
+	public String parseAndFind()
+	{
+		return new JsonPath(timeline).getString(searchRequest);
+	}
+
+	@Benchmark
+	public String findOnly()
+	{
+		return parsed.getString(searchRequest);
+	}
+
+	@Benchmark
+	public Object compiledFind()
+	{
+		return compiled.call(slurped, text);
+	}
+}
@@ -0,0 +1,144 @@
+package restAssuredTwitter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import groovy.json.JsonOutput;
+
+/*
+ * Ответы Twitter API для бенчмарков, по структуре и размеру как у настоящих ответов statuses/update, statuses/show и statuses/user_timeline:
+ * https://developer.twitter.com/en/docs/tweets/data-dictionary/overview/tweet-object
+ * Объект твита содержит полный объект автора, поэтому один твит занимает около 2Кб, а лента из 200 твитов - около 400Кб.
+ * Тексты твитов уникальны (text(n)), чтоб поиск find {it.text == '...'} находил ровно один твит.
+ * */
+
+public class TweetPayloads {
+	//id первого твита, остальные получают id на единицу меньше - лента идёт от новых твитов к старым
+	private static final long FIRST_ID = 1010101010101010101L;
+	private static final long USER_ID = 972978433641861120L;
+	private static final String SCREEN_NAME = "Dum_muD1";
+
+	//текст n-го твита ленты
+	public static String text(int n)
+	{
+		return "benchmark tweet number " + n + " #jmh";
+	}
+
+	//ответ на POST statuses/update: только что созданный твит
+	public static String update()
+	{
+		return JsonOutput.toJson(tweet(0));
+	}
+
+	//ответ на GET statuses/show для ретвита: твит вместе с вложенным retweeted_status
+	public static String show()
+	{
+		Map<String, Object> retweet = tweet(1);
+		retweet.put("text", "RT @" + SCREEN_NAME + ": " + text(0));
+		retweet.put("retweeted_status", tweet(0));
+		retweet.put("retweet_count", 1);
+		retweet.put("retweeted", true);
+		return JsonOutput.toJson(retweet);
+	}
+
+	//ответ на GET statuses/user_timeline: count твитов, от новых к старым
+	public static String timeline(int count)
+	{
+		List<Object> tweets = new ArrayList<Object>(count);
+		for(int n = 0; n < count; n++)
+			tweets.add(tweet(n));
+		return JsonOutput.toJson(tweets);
+	}
+
+	private static Map<String, Object> tweet(int n)
+	{
+		long id = FIRST_ID - n;
+		String text = text(n);
+
+		Map<String, Object> hashtag = new LinkedHashMap<String, Object>();
+		hashtag.put("text", "jmh");
+		hashtag.put("indices", Arrays.asList(text.length() - 4, text.length()));
+		Map<String, Object> entities = new LinkedHashMap<String, Object>();
+		entities.put("hashtags", Arrays.asList(hashtag));
+		entities.put("symbols", new ArrayList<Object>());
+		entities.put("user_mentions", new ArrayList<Object>());
+		entities.put("urls", new ArrayList<Object>());
+
+		Map<String, Object> tweet = new LinkedHashMap<String, Object>();
+		tweet.put("created_at", "Mon Apr 02 10:15:30 +0000 2018");
+		tweet.put("id", id);
+		tweet.put("id_str", String.valueOf(id));
+		tweet.put("text", text);
+		tweet.put("truncated", false);
+		tweet.put("entities", entities);
+		tweet.put("source", "<a href=\"https://github.com/stefimov/twitterRestAPI\" rel=\"nofollow\">restAssuredTwitter</a>");
+		tweet.put("in_reply_to_status_id", null);
+		tweet.put("in_reply_to_status_id_str", null);
+		tweet.put("in_reply_to_user_id", null);
+		tweet.put("in_reply_to_user_id_str", null);
+		tweet.put("in_reply_to_screen_name", null);
+		tweet.put("user", user());
+		tweet.put("geo", null);
+		tweet.put("coordinates", null);
+		tweet.put("place", null);
+		tweet.put("contributors", null);
+		tweet.put("is_quote_status", false);
+		tweet.put("retweet_count", 0);
+		tweet.put("favorite_count", 0);
+		tweet.put("favorited", false);
+		tweet.put("retweeted", false);
+		tweet.put("lang", "en");
+		return tweet;
+	}
+
+	private static Map<String, Object> user()
+	{
+		Map<String, Object> user = new LinkedHashMap<String, Object>();
+		user.put("id", USER_ID);
+		user.put("id_str", String.valueOf(USER_ID));
+		user.put("name", SCREEN_NAME);
+		user.put("screen_name", SCREEN_NAME);
+		user.put("location", "");
+		user.put("description", "Test account for REST Assured checks of the Twitter API");
+		user.put("url", null);
+		user.put("entities", Collections.singletonMap("description", Collections.singletonMap("urls", new ArrayList<Object>())));
+		user.put("protected", false);
+		user.put("followers_count", 3);
+		user.put("friends_count", 12);
+		user.put("listed_count", 0);
+		user.put("created_at", "Mon Mar 12 07:04:33 +0000 2018");
+		user.put("favourites_count", 0);
+		user.put("utc_offset", null);
+		user.put("time_zone", null);
+		user.put("geo_enabled", false);
+		user.put("verified", false);
+		user.put("statuses_count", 200);
+		user.put("lang", "ru");
+		user.put("contributors_enabled", false);
+		user.put("is_translator", false);
+		user.put("is_translation_enabled", false);
+		user.put("profile_background_color", "F5F8FA");
+		user.put("profile_background_image_url", null);
+		user.put("profile_background_image_url_https", null);
+		user.put("profile_background_tile", false);
+		user.put("profile_image_url", "http://abs.twimg.com/sticky/default_profile_images/default_profile_normal.png");
+		user.put("profile_image_url_https", "https://abs.twimg.com/sticky/default_profile_images/default_profile_normal.png");
+		user.put("profile_link_color", "1DA1F2");
+		user.put("profile_sidebar_border_color", "C0DEED");
+		user.put("profile_sidebar_fill_color", "DDEEF6");
+		user.put("profile_text_color", "333333");
+		user.put("profile_use_background_image", true);
+		user.put("has_extended_profile", false);
+		user.put("default_profile", true);
+		user.put("default_profile_image", true);
+		user.put("following", false);
+		user.put("follow_request_sent", false);
+		user.put("notifications", false);
+		user.put("translator_type", "none");
+		return user;
+	}
+}
@@ -0,0 +1,43 @@
+package restAssuredTwitter;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/*
+ * Аккаунты, выданные тест-кейсу из TwitterAccounts.lease(n): все разные, и пока аренда не закрыта, другим тест-кейсам они не выдаются.
+ * Аренду можно положить в хранилище контекста JUnit (CloseableResource) - тогда аккаунты вернутся в пул, когда закроется контекст тест-кейса.
+ * Повторный close() ничего не делает.
+ * */
+
+public final class AccountLease implements AutoCloseable, ExtensionContext.Store.CloseableResource {
+	private final List<TwitterAccount> accounts;
+	private boolean closed;
+
+	AccountLease(List<TwitterAccount> accounts)
+	{
+		this.accounts = Collections.unmodifiableList(accounts);
+	}
+
+	//i-й выданный аккаунт, с нуля
+	public TwitterAccount get(int index)
+	{
+		return accounts.get(index);
+	}
+
+	@Override
+	public synchronized void close()
+	{
+		if(closed)
+			return;
+		closed = true;
+		TwitterAccounts.release(accounts);
+	}
+
+	@Override
+	public String toString()
+	{
+		return accounts.toString();
+	}
+}
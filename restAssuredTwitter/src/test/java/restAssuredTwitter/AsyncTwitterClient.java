@@ -0,0 +1,418 @@
+package restAssuredTwitter;
+
+import static io.restassured.RestAssured.given;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.ManagedNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+
+import com.github.scribejava.core.model.Verb;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.internal.ResponseParserRegistrar;
+import io.restassured.internal.RestAssuredResponseOptionsImpl;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+
+/*
+ * Асинхронный клиент Twitter API для одного аккаунта: каждый запрос сразу возвращает CompletableFuture<Response>,
+ * и независимые шаги (например, ретвиты и проверки сотни разных твитов) выполняются одновременно, а зависимые
+ * выстраиваются цепочкой без ожидания в потоке теста:
+ *   AsyncTwitterClient client = AsyncTwitterClient.of(account);
+ *   client.update(text).thenCompose(created -> client.retweet(JsonFields.getString(created, "id_str")))
+ * Запросы выполняет неблокирующий Apache HttpAsyncClient: несколько потоков ввода-вывода (async.ioThreads, по умолчанию 2)
+ * обслуживают все соединения, и запрос в полёте не занимает поток. Соединений не больше async.maxConnections (по умолчанию 200),
+ * остальные запросы ждут свободного соединения в очереди пула, тоже не занимая потоков.
+ * Запросы идут мимо REST Assured, поэтому клиент сам делает то, что для спецификаций аккаунта делают их фильтры:
+ * подписывает запрос OAuth (TwitterAccount.authorization), берёт квоту в RateLimitScheduler и повторяет запрос после 429,
+ * проверяет CircuitBreaker адреса, записывает время ответа в LatencyHistograms и учитывается в счётчиках HttpConnectionPool.
+ * Таймауты - те же, что у адреса api (http.api.connectTimeoutMillis/readTimeoutMillis).
+ * Ответ - обычный Response REST Assured с уже прочитанным телом, его можно разбирать в любом потоке.
+ * Future завершается в потоке ввода-вывода, поэтому продолжения (thenApply, thenCompose) должны быть короткими
+ * и не ждать других запросов через join(): пока поток ждёт, стоят и все его соединения.
+ * Паузы (ожидание квоты, повторные попытки Eventually.awaitAsync) отсчитывает один поток-таймер twitter-async-timer.
+ * При записи и воспроизведении кассеты (см. Cassette) запросы выполняются синхронно через спецификации аккаунта:
+ * кассета - фильтр REST Assured, и только через него запросы попадают в файл и отвечаются из файла.
+ * Твиты, созданные через клиент, в сборщик мусора не попадают сами: GarbageTweetsHandler.addTweet нужно вызвать в потоке тест-кейса.
+ * */
+
+public class AsyncTwitterClient {
+	private static final int IO_THREADS = Integer.getInteger("async.ioThreads", 2);
+	private static final int MAX_CONNECTIONS = Integer.getInteger("async.maxConnections", 200);
+	//как у HttpConnectionPool: через сколько секунд простоя соединение закрывается
+	private static final long IDLE_SECONDS = Long.getLong("http.pool.idleSeconds", 30);
+
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(daemon("twitter-async-timer"));
+
+	private final TwitterAccount account;
+
+	private AsyncTwitterClient(TwitterAccount account)
+	{
+		this.account = account;
+	}
+
+	public static AsyncTwitterClient of(TwitterAccount account)
+	{
+		return new AsyncTwitterClient(account);
+	}
+
+	public TwitterAccount getAccount()
+	{
+		return account;
+	}
+
+	//POST statuses/update
+	public CompletableFuture<Response> update(String status)
+	{
+		return execute(Call.statuses("POST", "/update.json").param("status", status));
+	}
+
+	//GET statuses/show с полным текстом твита (tweet_mode=extended)
+	public CompletableFuture<Response> show(String id)
+	{
+		return execute(Call.statuses("GET", "/show.json").param("id", id).param("tweet_mode", "extended"));
+	}
+
+	//POST statuses/destroy/:id
+	public CompletableFuture<Response> destroy(String id)
+	{
+		return execute(Call.statuses("POST", "/destroy/{id_str}.json").pathParam("id_str", id));
+	}
+
+	//POST statuses/retweet/:id
+	public CompletableFuture<Response> retweet(String id)
+	{
+		return execute(Call.statuses("POST", "/retweet/{tweet_id}.json").pathParam("tweet_id", id));
+	}
+
+	//POST statuses/unretweet/:id
+	public CompletableFuture<Response> unretweet(String id)
+	{
+		return execute(Call.statuses("POST", "/unretweet/{tweet_id}.json").pathParam("tweet_id", id));
+	}
+
+	//GET statuses/user_timeline ленты аккаунта с параметрами params (count, since_id, max_id, ...)
+	public CompletableFuture<Response> userTimeline(Map<String, ?> params)
+	{
+		Call call = Call.statuses("GET", "/user_timeline.json").param("screen_name", account.getName());
+		for(Map.Entry<String, ?> param : params.entrySet())
+			call.param(param.getKey(), String.valueOf(param.getValue()));
+		return execute(call);
+	}
+
+	//future, завершённый ошибкой error
+	static <T> CompletableFuture<T> failed(Throwable error)
+	{
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		result.completeExceptionally(error);
+		return result;
+	}
+
+	//исходная ошибка без обёртки CompletionException, в которую её заворачивают зависимые future
+	static Throwable unwrap(Throwable error)
+	{
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+
+	private CompletableFuture<Response> execute(Call call)
+	{
+		if(Cassette.isEnabled())
+			return executeWithRestAssured(call);
+		CompletableFuture<Response> result = new CompletableFuture<Response>();
+		send(call, RateLimitScheduler.bucket(account, call.method, call.basePath() + call.path), 0, result);
+		return result;
+	}
+
+	/*
+	 * Отправляем запрос, как только корзина RateLimitScheduler выдаст квоту: если квоты нет, попытка откладывается на таймере.
+	 * После 429 запрос подписывается и отправляется заново, attempt - номер повтора.
+	 * */
+	private void send(Call call, RateLimitScheduler.Bucket bucket, int attempt, CompletableFuture<Response> result)
+	{
+		long wait = bucket.tryAcquire();
+		if(wait > 0)
+		{
+			timer.schedule(() -> send(call, bucket, attempt, result), wait, TimeUnit.MILLISECONDS);
+			return;
+		}
+
+		String endpoint = call.method + " " + call.path;
+		CircuitBreaker breaker = CircuitBreaker.of(call.endpoint);
+		//запрос собирается до разрешения выключателя: ошибка сборки не должна оставить его в half-open без ответа пробного запроса
+		HttpRequestBase request;
+		boolean probe;
+		try {
+			request = call.toHttpRequest(account);
+			probe = CircuitBreaker.isEnabled() && breaker.acquire(endpoint);
+		} catch(RuntimeException e) {
+			result.completeExceptionally(e);
+			return;
+		}
+
+		long start = System.nanoTime();
+		HttpConnectionPool.requestSent();
+		try {
+			Transport.client.execute(request, callback(call, bucket, attempt, result, endpoint, breaker, probe, start));
+		} catch(RuntimeException e) {
+			if(CircuitBreaker.isEnabled())
+				breaker.failed(probe, e.toString());
+			result.completeExceptionally(e);
+		}
+	}
+
+	//обработка ответа: выключатель, квота, повтор после 429
+	private FutureCallback<HttpResponse> callback(Call call, RateLimitScheduler.Bucket bucket, int attempt, CompletableFuture<Response> result,
+			String endpoint, CircuitBreaker breaker, boolean probe, long start)
+	{
+		return new FutureCallback<HttpResponse>() {
+			@Override
+			public void completed(HttpResponse response)
+			{
+				LatencyHistograms.record(endpoint, System.nanoTime() - start);
+				int status = response.getStatusLine().getStatusCode();
+				if(CircuitBreaker.isEnabled())
+				{
+					if(status >= 500)
+						breaker.failed(probe, response.getStatusLine().toString());
+					else
+						breaker.succeeded(probe);
+				}
+				bucket.update(response);
+				if(status == 429 && attempt < RateLimitScheduler.MAX_RETRIES && bucket.reject())
+				{
+					send(call, bucket, attempt + 1, result);
+					return;
+				}
+				try {
+					result.complete(response(response));
+				} catch(IOException | RuntimeException e) {
+					result.completeExceptionally(e);
+				}
+			}
+
+			@Override
+			public void failed(Exception error)
+			{
+				LatencyHistograms.record(endpoint, System.nanoTime() - start);
+				if(CircuitBreaker.isEnabled())
+					breaker.failed(probe, error.toString());
+				result.completeExceptionally(error);
+			}
+
+			@Override
+			public void cancelled()
+			{
+				if(CircuitBreaker.isEnabled())
+					breaker.failed(probe, "request cancelled");
+				result.cancel(false);
+			}
+		};
+	}
+
+	//запрос через спецификации аккаунта со всеми их фильтрами, включая кассету; выполняется сразу, в вызывающем потоке
+	private CompletableFuture<Response> executeWithRestAssured(Call call)
+	{
+		try {
+			RequestSpecification request = given(account.statusesSpec());
+			request.pathParams(call.pathParams);
+			request.params(call.params);
+			return CompletableFuture.completedFuture(request.request(call.method, call.path));
+		} catch(RuntimeException | Error e) {
+			return failed(e);
+		}
+	}
+
+	//future, которая завершится через millis миллисекунд (см. Eventually.awaitAsync)
+	static CompletableFuture<Void> delay(long millis)
+	{
+		CompletableFuture<Void> done = new CompletableFuture<Void>();
+		timer.schedule(() -> done.complete(null), millis, TimeUnit.MILLISECONDS);
+		return done;
+	}
+
+	/*
+	 * Ответ HttpAsyncClient (тело уже прочитано в память) в виде Response REST Assured.
+	 * Как и в Cassette, собранному ответу передаются настройки REST Assured, иначе response.then() на нём падает с NullPointerException.
+	 * */
+	private static Response response(HttpResponse response) throws IOException
+	{
+		List<Header> headers = new ArrayList<Header>();
+		for(org.apache.http.Header header : response.getAllHeaders())
+			headers.add(new Header(header.getName(), header.getValue()));
+		HttpEntity entity = response.getEntity();
+		ResponseBuilder builder = new ResponseBuilder().
+				setStatusCode(response.getStatusLine().getStatusCode()).
+				setStatusLine(response.getStatusLine().toString()).
+				setHeaders(new Headers(headers)).
+				setBody(entity == null ? new byte[0] : EntityUtils.toByteArray(entity));
+		org.apache.http.Header contentType = response.getFirstHeader("Content-Type");
+		if(contentType != null)
+			builder.setContentType(contentType.getValue());
+
+		Response built = builder.build();
+		RestAssuredResponseOptionsImpl<?> options = (RestAssuredResponseOptionsImpl<?>) built;
+		options.setConfig(RestAssuredConfig.config());
+		options.setRpr(new ResponseParserRegistrar());
+		return built;
+	}
+
+	private static ThreadFactory daemon(String name)
+	{
+		AtomicInteger threads = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/*
+	 * HttpAsyncClient с общим пулом соединений, запускается при первом запросе мимо кассеты
+	 * (при воспроизведении кассеты потоки ввода-вывода так и не создаются).
+	 * */
+	private static class Transport {
+		static final CloseableHttpAsyncClient client = start();
+
+		private static CloseableHttpAsyncClient start()
+		{
+			IOReactorConfig config = IOReactorConfig.custom().setIoThreadCount(IO_THREADS).setTcpNoDelay(true).build();
+			PoolingNHttpClientConnectionManager manager;
+			try {
+				manager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(config, daemon("twitter-async-io")),
+						(session, connectionConfig) -> {
+							//считаем каждое новое соединение, как и HttpConnectionPool
+							HttpConnectionPool.connectionOpened();
+							return ManagedNHttpClientConnectionFactory.INSTANCE.create(session, connectionConfig);
+						});
+			} catch(IOReactorException e) {
+				throw new IllegalStateException("Unable to start async HTTP client", e);
+			}
+			manager.setMaxTotal(MAX_CONNECTIONS);
+			manager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+
+			CloseableHttpAsyncClient client = HttpAsyncClients.custom().
+					setConnectionManager(manager).
+					setThreadFactory(daemon("twitter-async-reactor")).
+					disableCookieManagement().
+					build();
+			client.start();
+
+			//закрываем соединения, простаивающие дольше IDLE_SECONDS
+			long period = Math.max(IDLE_SECONDS / 2, 1);
+			timer.scheduleWithFixedDelay(() -> {
+				manager.closeExpiredConnections();
+				manager.closeIdleConnections(IDLE_SECONDS, TimeUnit.SECONDS);
+			}, period, period, TimeUnit.SECONDS);
+			return client;
+		}
+	}
+
+	//запрос statuses API: адрес, метод, шаблон пути и параметры - одинаково выполняется через HttpAsyncClient и через REST Assured
+	private static class Call {
+		final String endpoint;
+		final String method;
+		final String path;
+		final Map<String, String> pathParams = new LinkedHashMap<String, String>();
+		final Map<String, String> params = new LinkedHashMap<String, String>();
+
+		private Call(String endpoint, String method, String path)
+		{
+			this.endpoint = endpoint;
+			this.method = method;
+			this.path = path;
+		}
+
+		//запрос к {apiUri}/1.1/statuses
+		static Call statuses(String method, String path)
+		{
+			return new Call(TwitterEndpoints.API_ENDPOINT, method, path);
+		}
+
+		Call param(String name, String value)
+		{
+			params.put(name, value);
+			return this;
+		}
+
+		Call pathParam(String name, String value)
+		{
+			pathParams.put(name, value);
+			return this;
+		}
+
+		String basePath()
+		{
+			return TwitterEndpoints.STATUSES_PATH;
+		}
+
+		//подписанный запрос HttpClient с таймаутами адреса
+		HttpRequestBase toHttpRequest(TwitterAccount account)
+		{
+			//значения параметров пути - id твитов, кодировать в них нечего
+			String expanded = path;
+			for(Map.Entry<String, String> param : pathParams.entrySet())
+				expanded = expanded.replace("{" + param.getKey() + "}", param.getValue());
+			String url = TwitterEndpoints.apiUri() + basePath() + expanded;
+
+			HttpRequestBase request;
+			if(method.equals("GET"))
+				request = new HttpGet(params.isEmpty() ? url : url + "?" + URLEncodedUtils.format(pairs(), StandardCharsets.UTF_8));
+			else
+			{
+				HttpPost post = new HttpPost(url);
+				post.setEntity(new UrlEncodedFormEntity(pairs(), StandardCharsets.UTF_8));
+				request = post;
+			}
+			request.setHeader("Authorization", account.authorization(Verb.valueOf(method), url, params));
+			request.setHeader("Accept", ContentType.APPLICATION_JSON.getMimeType());
+			request.setConfig(RequestConfig.custom().
+					setConnectTimeout(HttpConnectionPool.connectTimeoutMillis(endpoint)).
+					setSocketTimeout(HttpConnectionPool.readTimeoutMillis(endpoint)).
+					build());
+			return request;
+		}
+
+		private List<NameValuePair> pairs()
+		{
+			List<NameValuePair> pairs = new ArrayList<NameValuePair>();
+			for(Map.Entry<String, String> param : params.entrySet())
+				pairs.add(new BasicNameValuePair(param.getKey(), param.getValue()));
+			return pairs;
+		}
+
+	}
+}
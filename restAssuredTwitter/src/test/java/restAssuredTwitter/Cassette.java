@@ -0,0 +1,595 @@
+package restAssuredTwitter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import groovy.json.JsonOutput;
+import io.restassured.authentication.AuthenticationScheme;
+import io.restassured.authentication.OAuthScheme;
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.filter.Filter;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.internal.ResponseParserRegistrar;
+import io.restassured.internal.RestAssuredResponseOptionsImpl;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.MultiPartSpecification;
+
+/*
+ * Запись и воспроизведение обмена с Twitter API ("кассета").
+ * Режим задаётся системным свойством twitter.cassette:
+ *   off    - запросы уходят в выбранный API как обычно (значение по умолчанию);
+ *   record - запросы уходят в API (local или real, см. TwitterEndpoints), а запросы и ответы записываются в файл кассеты;
+ *   replay - запросы никуда не отправляются, ответы берутся из файла кассеты.
+ * Пример: mvn test -Dtwitter.cassette=record, затем mvn test -Dtwitter.cassette=replay
+ * Файл задаётся свойством twitter.cassette.file (по умолчанию target/twitter.cassette).
+ * Воспроизведение не зависит ни от сети, ни от квот Twitter и занимает миллисекунды, поэтому на записанной кассете удобно
+ * мерить накладные расходы самих тестов (время запросов по-прежнему попадает в LatencyHistograms).
+ *
+ * Запрос сопоставляется с записанным по ключу: аккаунт, метод, шаблон пути (id в пути заменяются на {id}) и отсортированные параметры,
+ * у которых значения id (id, since_id, max_id, media_id, media_ids) и текст твита (status) заменены на {id} и {text}.
+ * Данные OAuth в кассету не попадают: вместо заголовка Authorization записывается только имя аккаунта.
+ * Из заголовков ответа сохраняются только Content-Type и x-rate-limit-*.
+ * Ответы с одинаковым ключом выдаются по порядку записи, но предпочтение отдаётся ответу, у которого id и текст совпадают с запросом:
+ * твиты из TweetFixturePool создаются параллельно и при воспроизведении могут достаться тест-кейсам в другом порядке.
+ * id твитов при воспроизведении переписываются согласованно: если записанный ответ выдан на запрос с другим id (или текстом),
+ * записанное значение заменяется на значение из запроса в этом и во всех следующих ответах (а id в запросах - обратно).
+ * На запрос, которого нет в кассете, возвращается 404 с ошибкой 34 и ключом запроса в тексте ошибки.
+ * Тексты твитов уникальны в каждом прогоне (см. UniqueMessages), поэтому без замены текстов воспроизведение не обходится.
+ * Записывать и воспроизводить кассету нужно последовательно (junit.parallel=false, как по умолчанию): при параллельном прогоне
+ * порядок запросов и выданные тест-кейсам аккаунты (TwitterAccountExtension) каждый раз другие.
+ *
+ * Формат файла: заголовок (сигнатура, версия, смещение индекса), записи ответов (статус, заголовки, тело) и индекс в конце
+ * (ключ, значения id и текста из запроса, смещение записи). При воспроизведении файл отображается в память (FileChannel.map),
+ * при открытии читается только индекс, а тело ответа - в момент выдачи.
+ * При записи кассета сохраняется на диск при завершении JVM.
+ * */
+
+public class Cassette {
+	//имя системного свойства и его значения
+	public static final String MODE_PROPERTY = "twitter.cassette";
+	public static final String FILE_PROPERTY = "twitter.cassette.file";
+	public static final String MODE_OFF = "off";
+	public static final String MODE_RECORD = "record";
+	public static final String MODE_REPLAY = "replay";
+
+	private static final int MAGIC = 0x54574354;
+	private static final int VERSION = 1;
+
+	//параметры, в которых передаются id твитов и медиа-файлов, и параметры с текстом твита
+	private static final Set<String> ID_PARAMS = new HashSet<String>(Arrays.asList("id", "since_id", "max_id", "media_id", "media_ids"));
+	private static final Set<String> TEXT_PARAMS = new HashSet<String>(Arrays.asList("status"));
+	//id твитов и медиа-файлов (snowflake) - числа не короче 10 цифр
+	private static final Pattern ID = Pattern.compile("\\d{10,}");
+	//значения id и текста в запросе, которые совпали с записанными, весят больше любого частичного совпадения текста
+	private static final int EXACT = 1 << 20;
+
+	//кассета текущего режима, создаётся при первом обращении
+	private static Cassette cassette;
+
+	private final Path path;
+	private final boolean replay;
+	//записанные при record обмены, в порядке получения ответов
+	private final List<Recorded> recorded = new ArrayList<Recorded>();
+	//отображённый в память файл и ещё не выданные ответы по ключам (при replay)
+	private MappedByteBuffer mapped;
+	private final Map<String, List<Indexed>> pending = new HashMap<String, List<Indexed>>();
+	//согласованная замена значений: записанный id -> выданный, выданный -> записанный, записанный текст -> текст из запроса
+	private final Map<String, String> ids = new HashMap<String, String>();
+	private final Map<String, String> liveIds = new HashMap<String, String>();
+	private final Map<String, String> texts = new LinkedHashMap<String, String>();
+
+	private Cassette(Path path, boolean replay)
+	{
+		this.path = path;
+		this.replay = replay;
+	}
+
+	//режим из системного свойства twitter.cassette
+	public static String mode()
+	{
+		String mode = System.getProperty(MODE_PROPERTY, MODE_OFF);
+		if(mode.equalsIgnoreCase(MODE_OFF) || mode.isEmpty())
+			return MODE_OFF;
+		if(mode.equalsIgnoreCase(MODE_RECORD))
+			return MODE_RECORD;
+		if(mode.equalsIgnoreCase(MODE_REPLAY))
+			return MODE_REPLAY;
+		throw new IllegalArgumentException("Unknown " + MODE_PROPERTY + " value: " + mode + " (expected " + MODE_OFF + ", " + MODE_RECORD + " or " + MODE_REPLAY + ")");
+	}
+
+	public static boolean isEnabled()
+	{
+		return !mode().equals(MODE_OFF);
+	}
+
+	public static boolean isReplaying()
+	{
+		return mode().equals(MODE_REPLAY);
+	}
+
+	/*
+	 * Фильтр REST Assured, который записывает или воспроизводит запросы, в зависимости от режима.
+	 * Стоит последним в спецификациях TwitterEndpoints, чтоб при воспроизведении выполнялись все остальные фильтры.
+	 * */
+	public static synchronized Filter filter()
+	{
+		if(cassette == null)
+			cassette = open();
+		Cassette current = cassette;
+		return (request, response, context) -> {
+			Call call = current.describe(request);
+			if(current.replay)
+				return configured(current.replay(call), request);
+			Response result = context.next(request, response);
+			current.record(call, result);
+			return result;
+		};
+	}
+
+	private static Cassette open()
+	{
+		String mode = mode();
+		if(mode.equals(MODE_OFF))
+			throw new IllegalStateException(MODE_PROPERTY + " is " + MODE_OFF);
+		Path path = Paths.get(System.getProperty(FILE_PROPERTY, "target/twitter.cassette"));
+		Cassette cassette = new Cassette(path, mode.equals(MODE_REPLAY));
+		if(cassette.replay)
+		{
+			try {
+				cassette.load();
+			} catch(IOException e) {
+				throw new UncheckedIOException("Unable to read cassette " + path, e);
+			}
+		}
+		else
+			Runtime.getRuntime().addShutdownHook(new Thread(cassette::save, "cassette-save"));
+		return cassette;
+	}
+
+	/*
+	 * Ключ запроса и значения id и текста из него.
+	 * Значения id из пути называются path0, path1, ...
+	 * */
+	private Call describe(FilterableRequestSpecification request)
+	{
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		StringBuilder template = new StringBuilder();
+		Matcher id = ID.matcher(request.getDerivedPath());
+		int index = 0;
+		while(id.find())
+		{
+			values.put("path" + index++, id.group());
+			id.appendReplacement(template, "{id}");
+		}
+		id.appendTail(template);
+
+		Map<String, String> params = new TreeMap<String, String>();
+		params.putAll(request.getRequestParams());
+		params.putAll(request.getQueryParams());
+		params.putAll(request.getFormParams());
+		for(MultiPartSpecification part : request.getMultiPartParams())
+			params.put(part.getControlName(), part.getContent() instanceof String ? (String) part.getContent() : "{binary}");
+
+		StringBuilder key = new StringBuilder(account(request.getAuthenticationScheme())).append(' ').append(request.getMethod()).append(' ').append(template);
+		char separator = '?';
+		for(Map.Entry<String, String> param : params.entrySet())
+		{
+			String name = param.getKey();
+			String value = param.getValue();
+			if(name.startsWith("oauth_"))
+				continue;
+			if(ID_PARAMS.contains(name) || TEXT_PARAMS.contains(name))
+			{
+				values.put(name, value);
+				value = ID_PARAMS.contains(name) ? "{id}" : "{text}";
+			}
+			key.append(separator).append(name).append('=').append(value);
+			separator = '&';
+		}
+		return new Call(key.toString(), values);
+	}
+
+	//имя аккаунта по токену OAuth: сами ключи и подпись в кассету не записываются
+	private static String account(AuthenticationScheme scheme)
+	{
+		if(!(scheme instanceof OAuthScheme))
+			return "-";
+		String token = ((OAuthScheme) scheme).getAccessToken();
+		for(TwitterAccount account : TwitterAccounts.all())
+		{
+			if(account.getAccessToken().equals(token))
+				return account.getName();
+		}
+		return "?";
+	}
+
+	private void record(Call call, Response response)
+	{
+		List<String[]> headers = new ArrayList<String[]>();
+		for(Header header : response.getHeaders())
+		{
+			String name = header.getName().toLowerCase();
+			if(name.equals("content-type") || name.startsWith("x-rate-limit-"))
+				headers.add(new String[] {header.getName(), header.getValue()});
+		}
+		Recorded interaction = new Recorded(call, response.statusCode(), response.statusLine(), headers, response.asByteArray());
+		synchronized(recorded)
+		{
+			recorded.add(interaction);
+		}
+	}
+
+	/*
+	 * Записываем кассету: сначала во временный файл, затем переименовываем его,
+	 * чтоб прерванная запись не испортила кассету предыдущего прогона.
+	 * */
+	private void save()
+	{
+		List<Recorded> interactions;
+		synchronized(recorded)
+		{
+			interactions = new ArrayList<Recorded>(recorded);
+		}
+		try {
+			if(path.getParent() != null)
+				Files.createDirectories(path.getParent());
+			Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+			long indexOffset;
+			try(CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(temporary));
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(counter)))
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(0);
+				long[] offsets = new long[interactions.size()];
+				for(int i = 0; i < interactions.size(); i++)
+				{
+					out.flush();
+					offsets[i] = counter.count;
+					Recorded interaction = interactions.get(i);
+					out.writeInt(interaction.status);
+					writeString(out, interaction.statusLine);
+					out.writeInt(interaction.headers.size());
+					for(String[] header : interaction.headers)
+					{
+						writeString(out, header[0]);
+						writeString(out, header[1]);
+					}
+					out.writeInt(interaction.body.length);
+					out.write(interaction.body);
+				}
+
+				out.flush();
+				indexOffset = counter.count;
+				out.writeInt(interactions.size());
+				for(int i = 0; i < interactions.size(); i++)
+				{
+					Call call = interactions.get(i).call;
+					writeString(out, call.key);
+					out.writeInt(call.values.size());
+					for(Map.Entry<String, String> value : call.values.entrySet())
+					{
+						writeString(out, value.getKey());
+						writeString(out, value.getValue());
+					}
+					out.writeLong(offsets[i]);
+				}
+			}
+			//смещение индекса в заголовке известно только теперь
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE))
+			{
+				ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+				header.putLong(indexOffset).flip();
+				channel.write(header, 2 * Integer.BYTES);
+			}
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			System.out.println("Cassette: " + interactions.size() + " interactions recorded to " + path);
+		} catch(IOException e) {
+			System.err.println("Unable to write cassette " + path + ": " + e);
+		}
+	}
+
+	//отображаем файл в память и читаем индекс
+	private void load() throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer buffer = mapped.duplicate();
+		if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException("Not a cassette file (or written by another version)");
+		buffer.position((int) buffer.getLong());
+		int count = buffer.getInt();
+		for(int i = 0; i < count; i++)
+		{
+			String key = readString(buffer);
+			int size = buffer.getInt();
+			Map<String, String> values = new LinkedHashMap<String, String>();
+			for(int j = 0; j < size; j++)
+				values.put(readString(buffer), readString(buffer));
+			long offset = buffer.getLong();
+			pending.computeIfAbsent(key, k -> new ArrayList<Indexed>()).add(new Indexed(values, (int) offset));
+		}
+	}
+
+	private synchronized Response replay(Call call)
+	{
+		List<Indexed> queue = pending.get(call.key);
+		Indexed best = null;
+		int bestScore = -1;
+		if(queue != null)
+		{
+			for(Indexed candidate : queue)
+			{
+				int score = score(candidate.values, call.values);
+				if(score > bestScore)
+				{
+					best = candidate;
+					bestScore = score;
+				}
+			}
+		}
+		if(best == null)
+			return notRecorded(call);
+		queue.remove(best);
+		bind(best.values, call.values);
+
+		//читаем запись ответа из отображённого файла
+		ByteBuffer buffer = mapped.duplicate();
+		buffer.position(best.offset);
+		ResponseBuilder builder = new ResponseBuilder().setStatusCode(buffer.getInt()).setStatusLine(readString(buffer));
+		List<Header> headers = new ArrayList<Header>();
+		int count = buffer.getInt();
+		for(int i = 0; i < count; i++)
+		{
+			Header header = new Header(readString(buffer), readString(buffer));
+			headers.add(header);
+			if(header.getName().equalsIgnoreCase("content-type"))
+				builder.setContentType(header.getValue());
+		}
+		return builder.setHeaders(new Headers(headers)).setBody(rewrite(readString(buffer))).build();
+	}
+
+	/*
+	 * Насколько записанный запрос похож на текущий: каждое совпавшее значение id или текста даёт EXACT,
+	 * у несовпавших текстов считается длина общего начала и конца ("fixture abc 3" ближе к "fixture xyz 3", чем к "a").
+	 * */
+	private int score(Map<String, String> recordedValues, Map<String, String> values)
+	{
+		int score = 0;
+		for(Map.Entry<String, String> value : values.entrySet())
+		{
+			String recordedValue = recordedValues.get(value.getKey());
+			if(recordedValue == null)
+				continue;
+			boolean text = TEXT_PARAMS.contains(value.getKey());
+			String live = text ? value.getValue() : replaceIds(value.getValue(), this::recordedId);
+			if(recordedValue.equals(live))
+				score += EXACT;
+			else if(text)
+				score += similarity(recordedValue, live);
+		}
+		return score;
+	}
+
+	//запоминаем, какие записанные id и тексты теперь означают значения из запроса
+	private void bind(Map<String, String> recordedValues, Map<String, String> values)
+	{
+		for(Map.Entry<String, String> value : values.entrySet())
+		{
+			String recordedValue = recordedValues.get(value.getKey());
+			if(recordedValue == null || recordedValue.equals(value.getValue()))
+				continue;
+			if(TEXT_PARAMS.contains(value.getKey()))
+			{
+				texts.put(recordedValue, value.getValue());
+				continue;
+			}
+			Matcher recordedId = ID.matcher(recordedValue);
+			Matcher liveId = ID.matcher(value.getValue());
+			while(recordedId.find() && liveId.find())
+			{
+				if(recordedId.group().equals(liveId.group()))
+					continue;
+				ids.put(recordedId.group(), liveId.group());
+				liveIds.put(liveId.group(), recordedId.group());
+			}
+		}
+	}
+
+	//тело записанного ответа с выданными id и текстами из запросов
+	private String rewrite(String body)
+	{
+		if(!ids.isEmpty())
+			body = replaceIds(body, id -> ids.getOrDefault(id, id));
+		for(Map.Entry<String, String> text : texts.entrySet())
+			body = body.replace(escape(text.getKey()), escape(text.getValue()));
+		return body;
+	}
+
+	/*
+	 * Записанный id для выданного. Тесты передают и соседние значения (since_id = id - 1, см. TimelineCache.isAbsent),
+	 * поэтому если выданный id не найден, проверяются id + 1 и id - 1.
+	 * */
+	private String recordedId(String live)
+	{
+		String recordedValue = liveIds.get(live);
+		if(recordedValue != null)
+			return recordedValue;
+		try {
+			long value = Long.parseLong(live);
+			for(int delta = -1; delta <= 1; delta += 2)
+			{
+				String neighbour = liveIds.get(Long.toString(value - delta));
+				if(neighbour != null)
+					return Long.toString(Long.parseLong(neighbour) + delta);
+			}
+		} catch(NumberFormatException e) {
+			//не число - оставляем как есть
+		}
+		return live;
+	}
+
+	/*
+	 * Ответ, собранный ResponseBuilder, не знает настроек запроса, и response.then() на нём падает с NullPointerException.
+	 * REST Assured передаёт их своим ответам так же, через setConfig.
+	 * */
+	private static Response configured(Response response, FilterableRequestSpecification request)
+	{
+		RestAssuredResponseOptionsImpl<?> options = (RestAssuredResponseOptionsImpl<?>) response;
+		options.setConfig(request.getConfig());
+		options.setRpr(new ResponseParserRegistrar());
+		return response;
+	}
+
+	private static Response notRecorded(Call call)
+	{
+		String message = "Sorry, that page does not exist. No recorded interaction for " + call.key;
+		return new ResponseBuilder().
+				setStatusCode(404).
+				setStatusLine("HTTP/1.1 404 Not Found").
+				setContentType("application/json;charset=utf-8").
+				setBody("{\"errors\":[{\"code\":34,\"message\":" + JsonOutput.toJson(message) + "}]}").
+				build();
+	}
+
+	private static String replaceIds(String text, Function<String, String> replacement)
+	{
+		Matcher id = ID.matcher(text);
+		if(!id.find())
+			return text;
+		StringBuffer result = new StringBuffer(text.length());
+		do {
+			id.appendReplacement(result, replacement.apply(id.group()));
+		} while(id.find());
+		id.appendTail(result);
+		return result.toString();
+	}
+
+	private static int similarity(String a, String b)
+	{
+		int prefix = 0;
+		int max = Math.min(a.length(), b.length());
+		while(prefix < max && a.charAt(prefix) == b.charAt(prefix))
+			prefix++;
+		int suffix = 0;
+		while(suffix < max - prefix && a.charAt(a.length() - 1 - suffix) == b.charAt(b.length() - 1 - suffix))
+			suffix++;
+		return prefix + suffix;
+	}
+
+	//текст в том виде, в каком он стоит внутри строки JSON (так же его экранирует LocalTwitterServer)
+	private static String escape(String text)
+	{
+		String json = JsonOutput.toJson(text);
+		return json.substring(1, json.length() - 1);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	//ключ запроса и значения id и текста из него
+	private static class Call {
+		final String key;
+		final Map<String, String> values;
+
+		Call(String key, Map<String, String> values)
+		{
+			this.key = key;
+			this.values = values;
+		}
+	}
+
+	//обмен, записанный в этом прогоне
+	private static class Recorded {
+		final Call call;
+		final int status;
+		final String statusLine;
+		final List<String[]> headers;
+		final byte[] body;
+
+		Recorded(Call call, int status, String statusLine, List<String[]> headers, byte[] body)
+		{
+			this.call = call;
+			this.status = status;
+			this.statusLine = statusLine;
+			this.headers = headers;
+			this.body = body;
+		}
+	}
+
+	//запись индекса кассеты: значения из запроса и смещение ответа в файле
+	private static class Indexed {
+		final Map<String, String> values;
+		final int offset;
+
+		Indexed(Map<String, String> values, int offset)
+		{
+			this.values = values;
+			this.offset = offset;
+		}
+	}
+
+	//поток, который считает записанные байты, чтоб знать смещения записей
+	private static class CountingOutputStream extends FilterOutputStream {
+		long count;
+
+		CountingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
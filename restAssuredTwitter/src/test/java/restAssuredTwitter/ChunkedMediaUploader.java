@@ -0,0 +1,216 @@
+package restAssuredTwitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import io.restassured.builder.MultiPartSpecBuilder;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+
+/*
+ * Загрузка медиа-файлов по частям через POST media/upload:
+ * https://developer.twitter.com/en/docs/media/upload-media/uploading-media/chunked-media-upload
+ *   INIT     - объявляем размер и тип файла, получаем media_id;
+ *   APPEND   - отправляем файл частями (multipart, без base64);
+ *   FINALIZE - завершаем загрузку;
+ *   STATUS   - ждём окончания обработки, если Twitter вернул processing_info.
+ * Файл читается потоком в буферы фиксированного размера chunkSize, одновременно в работе не больше parallelism частей,
+ * поэтому расход памяти не зависит от размера файла: parallelism * chunkSize.
+ * Часть, которую не удалось отправить (ошибка соединения или 5xx), отправляется повторно, всего до maxAttempts попыток.
+ * */
+
+public class ChunkedMediaUploader {
+	//размер части по умолчанию
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+	//ограничение на время ожидания обработки файла (STATUS)
+	private static final long MAX_PROCESSING_WAIT_MILLIS = 60000;
+
+	//потоки для параллельной отправки частей
+	private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "media-append");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final int chunkSize;
+	private final int parallelism;
+	private final int maxAttempts;
+
+	public ChunkedMediaUploader()
+	{
+		this(DEFAULT_CHUNK_SIZE, 2, 3);
+	}
+
+	public ChunkedMediaUploader(int chunkSize, int parallelism, int maxAttempts)
+	{
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism;
+		this.maxAttempts = maxAttempts;
+	}
+
+	/*
+	 * Загружаем файл из source размером totalBytes.
+	 * request - создаёт новый авторизованный запрос к {uploadUri}/1.1/media, например () -> given(account.mediaSpec())
+	 * Возвращает ответ на FINALIZE (или на последний STATUS), а если какой-то шаг не удался - ответ этого шага.
+	 * */
+	public Response upload(Supplier<RequestSpecification> request, InputStream source, long totalBytes, String mediaType) throws IOException
+	{
+		Response response = request.get().
+				param("command", "INIT").
+				param("total_bytes", totalBytes).
+				param("media_type", mediaType).
+				post("/upload.json");
+		if(!isSuccess(response))
+			return response;
+		String mediaId = response.jsonPath().getString("media_id_string");
+
+		response = appendAll(request, source, mediaId);
+		if(response != null)
+			return response;
+
+		response = request.get().
+				param("command", "FINALIZE").
+				param("media_id", mediaId).
+				post("/upload.json");
+		return awaitProcessing(request, mediaId, response);
+	}
+
+	/*
+	 * APPEND: читаем файл в буферы из пула и отправляем части. Если все буферы заняты, чтение ждёт, пока освободится один из них.
+	 * Возвращает null, если все части отправлены, иначе - ответ на первую неудачную часть.
+	 * */
+	private Response appendAll(Supplier<RequestSpecification> request, InputStream source, String mediaId) throws IOException
+	{
+		BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(parallelism);
+		for(int i = 0; i < parallelism; i++)
+			buffers.add(new byte[chunkSize]);
+
+		AtomicReference<Response> failed = new AtomicReference<Response>();
+		List<CompletableFuture<Void>> appends = new ArrayList<CompletableFuture<Void>>();
+		for(int segment = 0; failed.get() == null; segment++)
+		{
+			byte[] buffer = take(buffers);
+			int length = readFully(source, buffer);
+			if(length == 0)
+			{
+				buffers.add(buffer);
+				break;
+			}
+
+			int index = segment;
+			appends.add(CompletableFuture.supplyAsync(() -> append(request, mediaId, index, buffer, length), executor).
+					thenAccept(result -> {
+						if(!isSuccess(result))
+							failed.compareAndSet(null, result);
+					}).
+					whenComplete((result, error) -> buffers.add(buffer)));
+			if(length < buffer.length)
+				break;
+		}
+
+		try {
+			CompletableFuture.allOf(appends.toArray(new CompletableFuture<?>[0])).join();
+		} catch(CompletionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+		return failed.get();
+	}
+
+	//отправка одной части с повторами при ошибках соединения и 5xx
+	private Response append(Supplier<RequestSpecification> request, String mediaId, int segmentIndex, byte[] buffer, int length)
+	{
+		for(int attempt = 1; ; attempt++)
+		{
+			try {
+				Response response = request.get().
+						multiPart("command", "APPEND").
+						multiPart("media_id", mediaId).
+						multiPart("segment_index", String.valueOf(segmentIndex)).
+						multiPart(new MultiPartSpecBuilder(new ByteArrayInputStream(buffer, 0, length)).
+								controlName("media").
+								fileName("segment" + segmentIndex).
+								mimeType("application/octet-stream").
+								build()).
+						post("/upload.json");
+				if(response.statusCode() < 500 || attempt == maxAttempts)
+					return response;
+			} catch(RuntimeException e) {
+				if(attempt == maxAttempts)
+					throw e;
+			}
+			pause(100L * attempt);
+		}
+	}
+
+	//STATUS: если файл ещё обрабатывается, опрашиваем его состояние через check_after_secs секунд
+	private Response awaitProcessing(Supplier<RequestSpecification> request, String mediaId, Response response)
+	{
+		long deadline = System.currentTimeMillis() + MAX_PROCESSING_WAIT_MILLIS;
+		while(isSuccess(response) && isPending(response) && System.currentTimeMillis() < deadline)
+		{
+			Integer checkAfter = response.jsonPath().get("processing_info.check_after_secs");
+			pause(1000L * (checkAfter == null ? 1 : checkAfter));
+			response = request.get().
+					param("command", "STATUS").
+					param("media_id", mediaId).
+					get("/upload.json");
+		}
+		return response;
+	}
+
+	private static boolean isPending(Response response)
+	{
+		if(response.asString().isEmpty())
+			return false;
+		String state = response.jsonPath().getString("processing_info.state");
+		return "pending".equals(state) || "in_progress".equals(state);
+	}
+
+	private static boolean isSuccess(Response response)
+	{
+		return response.statusCode() >= 200 && response.statusCode() < 300;
+	}
+
+	//читаем из потока, пока не заполним буфер или не дойдём до конца файла
+	private static int readFully(InputStream source, byte[] buffer) throws IOException
+	{
+		int length = 0;
+		int read;
+		while(length < buffer.length && (read = source.read(buffer, length, buffer.length - length)) != -1)
+			length += read;
+		return length;
+	}
+
+	private static byte[] take(BlockingQueue<byte[]> buffers)
+	{
+		try {
+			return buffers.take();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a free upload buffer", e);
+		}
+	}
+
+	private static void pause(long millis)
+	{
+		try {
+			Thread.sleep(millis);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while uploading media", e);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package restAssuredTwitter;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.opentest4j.TestAbortedException;
+
+import io.restassured.filter.Filter;
+import io.restassured.response.Response;
+
+/*
+ * Автоматический выключатель (circuit breaker) для каждого адреса API: api (твиты) и upload (медиа-файлы), см. TwitterEndpoints.
+ * Когда api.twitter.com или upload.twitter.com деградирует, каждый запрос ждёт таймаута (см. HttpConnectionPool), и прогон
+ * из минут превращается в час. Выключатель считает подряд идущие ошибки - ответы 5xx и ошибки соединения, включая таймауты, -
+ * и после breaker.failures ошибок подряд (по умолчанию 5) размыкается: следующие запросы к этому адресу сразу завершаются
+ * исключением OpenException, не уходя в сеть. Это TestAbortedException, поэтому тест-кейс, попавший на него, JUnit отмечает
+ * как прерванный, а не упавший, а следующие тест-кейсы пропускаются ещё до начала (см. CircuitBreakerExtension).
+ * Через breaker.openSeconds секунд (по умолчанию 30) один запрос пропускается пробным (half-open): если он прошёл, выключатель
+ * замыкается и запросы идут как обычно, если нет - снова размыкается на тот же срок. Пока пробный запрос в пути, остальные отклоняются.
+ * Любой ответ меньше 500 (в том числе 4xx и 429, который обрабатывает RateLimitScheduler) обнуляет счётчик ошибок.
+ * breaker.failures=0 отключает выключатель.
+ * Запросы REST Assured проходят через filter(endpoint), а AsyncTwitterClient вызывает acquire/succeeded/failed сам.
+ * Размыкания и замыкания не печатаются по ходу прогона, а записываются с временем и выводятся в report() (см. HttpConnectionStatsListener).
+ * */
+
+public class CircuitBreaker {
+	private static final int FAILURE_THRESHOLD = Integer.getInteger("breaker.failures", 5);
+	private static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("breaker.openSeconds", 30));
+
+	//адрес API -> выключатель
+	private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private enum State { CLOSED, OPEN, HALF_OPEN }
+
+	//запрос отклонён разомкнутым выключателем
+	public static class OpenException extends TestAbortedException {
+		private static final long serialVersionUID = 1L;
+
+		OpenException(String message)
+		{
+			super(message);
+		}
+	}
+
+	private final String endpoint;
+	//состояние и счётчики, под монитором this
+	private State state = State.CLOSED;
+	private int failures;
+	private long openUntil;
+	private String lastFailure;
+	private int trips;
+	private long rejected;
+	//размыкания и замыкания за прогон, для отчёта
+	private final List<String> events = new ArrayList<String>();
+
+	private CircuitBreaker(String endpoint)
+	{
+		this.endpoint = endpoint;
+	}
+
+	public static CircuitBreaker of(String endpoint)
+	{
+		return breakers.computeIfAbsent(endpoint, CircuitBreaker::new);
+	}
+
+	//включён ли выключатель (breaker.failures больше 0)
+	static boolean isEnabled()
+	{
+		return FAILURE_THRESHOLD > 0;
+	}
+
+	//фильтр REST Assured для запросов к адресу endpoint
+	public static Filter filter(String endpoint)
+	{
+		CircuitBreaker breaker = of(endpoint);
+		return (request, response, context) -> {
+			if(!isEnabled())
+				return context.next(request, response);
+			boolean probe = breaker.acquire(request.getMethod() + " " + request.getUserDefinedPath());
+			Response result;
+			try {
+				result = context.next(request, response);
+			} catch(Throwable e) {
+				breaker.failed(probe, e.toString());
+				throw e;
+			}
+			if(result.statusCode() >= 500)
+				breaker.failed(probe, result.statusLine());
+			else
+				breaker.succeeded(probe);
+			return result;
+		};
+	}
+
+	//отклоняются ли сейчас запросы (выключатель разомкнут, и срок до пробного запроса ещё не вышел)
+	public synchronized boolean isRejecting()
+	{
+		return state == State.OPEN && System.currentTimeMillis() < openUntil || state == State.HALF_OPEN;
+	}
+
+	//состояние для сообщений об ошибке и пропуске тест-кейсов
+	public synchronized String describe()
+	{
+		if(state == State.CLOSED)
+			return "Circuit breaker for " + endpoint + " is closed";
+		long left = Math.max(openUntil - System.currentTimeMillis(), 0);
+		return "Circuit breaker for " + endpoint + " is " + (state == State.OPEN ? "open" : "half-open") + " after " + FAILURE_THRESHOLD
+				+ " consecutive failures (last: " + lastFailure + "), next probe in " + TimeUnit.MILLISECONDS.toSeconds(left + 999) + " s";
+	}
+
+	//выключатели, которые размыкались за прогон
+	public static String report()
+	{
+		List<String> lines = new ArrayList<String>();
+		for(CircuitBreaker breaker : new TreeMap<String, CircuitBreaker>(breakers).values())
+		{
+			synchronized(breaker)
+			{
+				if(breaker.trips > 0)
+				{
+					lines.add(String.format("Circuit breaker %s: %s, opened %d times, %d requests rejected, last failure: %s",
+							breaker.endpoint, breaker.state.name().toLowerCase(), breaker.trips, breaker.rejected, breaker.lastFailure));
+					for(String event : breaker.events)
+						lines.add("  " + event);
+				}
+			}
+		}
+		return String.join(System.lineSeparator(), lines);
+	}
+
+	//разрешение на запрос request; true - это пробный запрос разомкнутого выключателя
+	synchronized boolean acquire(String request)
+	{
+		if(state == State.CLOSED)
+			return false;
+		if(state == State.OPEN && System.currentTimeMillis() >= openUntil)
+		{
+			state = State.HALF_OPEN;
+			return true;
+		}
+		rejected++;
+		throw new OpenException(request + " rejected: " + describe());
+	}
+
+	//ответы запросов, отправленных до размыкания, на разомкнутый выключатель не влияют: его состояние меняет только пробный запрос
+	synchronized void succeeded(boolean probe)
+	{
+		if(state == State.CLOSED)
+			failures = 0;
+		else if(probe)
+		{
+			state = State.CLOSED;
+			failures = 0;
+			event("closed: probe request succeeded");
+		}
+	}
+
+	synchronized void failed(boolean probe, String failure)
+	{
+		if(state == State.CLOSED)
+		{
+			lastFailure = failure;
+			if(++failures >= FAILURE_THRESHOLD)
+				open();
+		}
+		else if(probe)
+		{
+			lastFailure = failure;
+			open();
+		}
+	}
+
+	private void open()
+	{
+		state = State.OPEN;
+		openUntil = System.currentTimeMillis() + OPEN_MILLIS;
+		trips++;
+		event("opened, last failure: " + lastFailure);
+	}
+
+	private void event(String description)
+	{
+		events.add(new SimpleDateFormat("HH:mm:ss").format(new Date()) + " " + description);
+	}
+}
@@ -0,0 +1,25 @@
+package restAssuredTwitter;
+
+import org.junit.jupiter.api.extension.ConditionEvaluationResult;
+import org.junit.jupiter.api.extension.ExecutionCondition;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/*
+ * Расширение JUnit, которое пропускает тест-кейсы, пока выключатель API разомкнут (см. CircuitBreaker).
+ * Подключается ко всем наборам автоматически: META-INF/services/org.junit.jupiter.api.extension.Extension
+ * и параметр junit.jupiter.extensions.autodetection.enabled в pom.xml.
+ * Проверяется только выключатель api: через него работает каждый тест-кейс (твиты, заготовки TweetFixturePool, удаление мусора).
+ * Если недоступен только upload, тест-кейсы загрузки прерываются на первом же запросе исключением CircuitBreaker.OpenException.
+ * Когда срок размыкания истёк, тест-кейс выполняется, и его первый запрос становится пробным.
+ * */
+
+public class CircuitBreakerExtension implements ExecutionCondition {
+	@Override
+	public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context)
+	{
+		CircuitBreaker api = CircuitBreaker.of(TwitterEndpoints.API_ENDPOINT);
+		if(context.getTestMethod().isPresent() && api.isRejecting())
+			return ConditionEvaluationResult.disabled(api.describe());
+		return ConditionEvaluationResult.enabled("Circuit breaker for " + TwitterEndpoints.API_ENDPOINT + " lets requests through");
+	}
+}
@@ -0,0 +1,134 @@
+package restAssuredTwitter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.hamcrest.Matcher;
+
+/*
+ * Проверки с ожиданием для данных, которые Twitter обновляет не сразу (eventual consistency):
+ * только что созданный твит или ретвит может появиться в GET statuses/user_timeline, а retweet_count в GET statuses/show
+ * с задержкой. Вместо одного запроса сразу после изменения (тест падает на отстающем сервере) или паузы на фиксированное время
+ * (тест всегда ждёт) запрос повторяется, пока проверка не пройдёт, с экспоненциально растущей паузой между попытками.
+ * Если проверка не прошла до крайнего срока, бросается AssertionError последней попытки.
+ * Для ленты удобнее await() вместе с TimelineCache: каждая попытка догружает только твиты, появившиеся с прошлой попытки (since_id),
+ * а не всю страницу из 20-200 последних твитов. Для полей твита - awaitLookup(): проверки параллельных тест-кейсов
+ * уходят одним запросом GET statuses/lookup (см. TweetLookup).
+ * Настройки задаются системными свойствами:
+ *   poll.timeoutSeconds      - крайний срок ожидания (по умолчанию 10);
+ *   poll.initialDelayMillis  - пауза после первой неудачной попытки, дальше она удваивается (по умолчанию 100);
+ *   poll.maxDelayMillis      - наибольшая пауза между попытками (по умолчанию 2000).
+ * */
+
+public class Eventually {
+	private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("poll.timeoutSeconds", 10));
+	private static final long INITIAL_DELAY_MILLIS = Long.getLong("poll.initialDelayMillis", 100);
+	private static final long MAX_DELAY_MILLIS = Long.getLong("poll.maxDelayMillis", 2000);
+
+	/*
+	 * Проверяем condition, пока оно не станет истинным, description - что ожидается, для сообщения об ошибке.
+	 * Например: Eventually.await("tweet " + id + " in timeline", () -> TimelineCache.of(account).contains(id))
+	 * */
+	public static void await(String description, BooleanSupplier condition)
+	{
+		poll(() -> {
+			if(!condition.getAsBoolean())
+				throw new AssertionError("Expected " + description + " within " + TIMEOUT_MILLIS + " ms");
+			return null;
+		});
+	}
+
+	/*
+	 * Твит id, запрашиваемый от имени account через общую очередь TweetLookup, пока значение по выражению path
+	 * в его JSON не будет удовлетворять matcher. Возвращает твит, на котором проверка прошла.
+	 * */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> awaitLookup(TwitterAccount account, String id, String path, Matcher<?> matcher)
+	{
+		Matcher<Object> valueMatcher = (Matcher<Object>) matcher;
+		return poll(() -> {
+			Map<String, Object> tweet = TweetLookup.of(account).lookup(id);
+			if(tweet == null)
+				throw new AssertionError("No status found with ID " + id + " in GET statuses/lookup");
+			assertThat("JSON path " + path + " of tweet " + id + " doesn't match.", GPath.of(path).evaluate(tweet), valueMatcher);
+			return tweet;
+		});
+	}
+
+	/*
+	 * Асинхронный вариант для цепочек AsyncTwitterClient (см. LoadFlow): attempt повторяется с той же растущей паузой,
+	 * пока его результат завершается AssertionError. Паузы отсчитывает таймер AsyncTwitterClient, поток на время ожидания не занимается.
+	 * */
+	public static <T> CompletableFuture<T> awaitAsync(Supplier<CompletableFuture<T>> attempt)
+	{
+		return pollAsync(attempt, System.currentTimeMillis() + TIMEOUT_MILLIS, INITIAL_DELAY_MILLIS);
+	}
+
+	private static <T> CompletableFuture<T> pollAsync(Supplier<CompletableFuture<T>> attempt, long deadline, long delay)
+	{
+		CompletableFuture<T> started;
+		try {
+			started = attempt.get();
+		} catch(RuntimeException | Error e) {
+			started = AsyncTwitterClient.failed(e);
+		}
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		started.whenComplete((value, error) -> {
+			if(error == null)
+			{
+				result.complete(value);
+				return;
+			}
+			Throwable cause = AsyncTwitterClient.unwrap(error);
+			long left = deadline - System.currentTimeMillis();
+			if(!(cause instanceof AssertionError) || left <= 0)
+			{
+				result.completeExceptionally(cause);
+				return;
+			}
+			AsyncTwitterClient.delay(Math.min(delay, left)).
+					thenCompose(done -> pollAsync(attempt, deadline, Math.min(delay * 2, MAX_DELAY_MILLIS))).
+					whenComplete((next, nextError) -> {
+						if(nextError == null)
+							result.complete(next);
+						else
+							result.completeExceptionally(AsyncTwitterClient.unwrap(nextError));
+					});
+		});
+		return result;
+	}
+
+	//повторяем attempt, пока он бросает AssertionError, с растущей паузой между попытками
+	private static <T> T poll(Supplier<T> attempt)
+	{
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		long delay = INITIAL_DELAY_MILLIS;
+		while(true)
+		{
+			try {
+				return attempt.get();
+			} catch(AssertionError e) {
+				long left = deadline - System.currentTimeMillis();
+				if(left <= 0)
+					throw e;
+				pause(Math.min(delay, left));
+				delay = Math.min(delay * 2, MAX_DELAY_MILLIS);
+			}
+		}
+	}
+
+	private static void pause(long millis)
+	{
+		try {
+			Thread.sleep(millis);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while polling", e);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package restAssuredTwitter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import groovy.json.JsonSlurper;
+import groovy.lang.Closure;
+import groovy.lang.GroovyShell;
+
+/*
+ * Выражения GPath, которые компилируются один раз на JVM.
+ * REST Assured (then().body(path, ...), JsonPath.get(path)) на каждый вызов собирает из выражения новый скрипт Groovy
+ * и компилирует его в новый класс: это миллисекунды на каждую проверку и растущий metaspace при нагрузке.
+ * Здесь выражение компилируется в замыкание при первом обращении и дальше берётся из кеша по тексту выражения.
+ * Значения, которые меняются от вызова к вызову, не подставляются в текст выражения через String.format,
+ * а передаются параметрами: текст выражения не меняется, и кавычки в тексте твита ничего не ломают.
+ *   GPath TWEET_BY_ID = GPath.of("find { it.id_str == id }", "id");
+ *   Object tweet = TWEET_BY_ID.evaluate(timeline, retweet_id);
+ * Выражение вычисляется от корня JSON, как в REST Assured: "entities.hashtags.text", "find { ... }.id_str", "[0].id_str";
+ * "" и "$" - сам корень. JSON разбирается JsonSlurper (parse), числа с точкой получаются BigDecimal, а не Float, как в JsonPath.
+ * Параметризованные проверки Hamcrest поверх этого - GPathMatcher.
+ * */
+
+public final class GPath {
+	//выражение и имена параметров -> скомпилированное выражение
+	private static final Map<List<String>, GPath> compiled = new ConcurrentHashMap<List<String>, GPath>();
+	private static final GroovyShell shell = new GroovyShell(GPath.class.getClassLoader());
+
+	//твит ленты с id_str == id
+	public static final GPath TWEET_BY_ID = of("find { it.id_str == id }", "id");
+
+	private final String expression;
+	private final String[] parameters;
+	private final Closure<?> closure;
+
+	private GPath(String expression, String[] parameters)
+	{
+		this.expression = expression;
+		this.parameters = parameters;
+		this.closure = (Closure<?>) shell.evaluate(source(expression, parameters));
+	}
+
+	//выражение с параметрами parameters (имена переменных в выражении), компилируется один раз
+	public static GPath of(String expression, String... parameters)
+	{
+		String[] key = new String[parameters.length + 1];
+		key[0] = expression;
+		System.arraycopy(parameters, 0, key, 1, parameters.length);
+		return compiled.computeIfAbsent(Arrays.asList(key), k -> new GPath(expression, parameters));
+	}
+
+	//разбираем JSON в дерево Map/List, по которому вычисляются выражения
+	public static Object parse(String json)
+	{
+		ParseStats.parsed(json.length());
+		return new JsonSlurper().parseText(json);
+	}
+
+	//значение выражения для разобранного JSON, arguments - значения параметров в том же порядке, что и в of
+	public Object evaluate(Object json, Object... arguments)
+	{
+		if(arguments.length != parameters.length)
+			throw new IllegalArgumentException(this + " expects " + parameters.length + " arguments but got " + arguments.length);
+		Object[] call = new Object[arguments.length + 1];
+		call[0] = json;
+		System.arraycopy(arguments, 0, call, 1, arguments.length);
+		return closure.call(call);
+	}
+
+	public String getExpression()
+	{
+		return expression;
+	}
+
+	//выражение с подставленными значениями параметров, для сообщений об ошибках
+	public String describe(Object... arguments)
+	{
+		StringBuilder description = new StringBuilder(expression);
+		for(int i = 0; i < parameters.length && i < arguments.length; i++)
+			description.append(i == 0 ? " with " : ", ").append(parameters[i]).append(" = '").append(arguments[i]).append("'");
+		return description.toString();
+	}
+
+	@Override
+	public String toString()
+	{
+		return expression;
+	}
+
+	/*
+	 * Текст замыкания: корень и параметры - аргументы замыкания, выражение дописывается к корню:
+	 * { root, id -> root.find { it.id_str == id } }
+	 * */
+	private static String source(String expression, String[] parameters)
+	{
+		StringBuilder source = new StringBuilder("{ root");
+		for(String parameter : parameters)
+			source.append(", ").append(parameter);
+		source.append(" -> ");
+		String trimmed = expression.trim();
+		if(trimmed.isEmpty() || trimmed.equals("$"))
+			source.append("root");
+		else
+			source.append("root").append(trimmed.startsWith("[") ? "" : ".").append(trimmed);
+		return source.append(" }").toString();
+	}
+}
@@ -0,0 +1,50 @@
+package restAssuredTwitter;
+
+import static org.hamcrest.Matchers.notNullValue;
+
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeDiagnosingMatcher;
+
+/*
+ * Параметризованная проверка Hamcrest на скомпилированном выражении GPath (см. GPath):
+ * значение выражения с заданными параметрами должно удовлетворять matcher.
+ * Проверяется либо текст JSON (так её вызывает REST Assured: response.then().body(timelineContains(id))),
+ * либо уже разобранное дерево (ParsedResponse.body(timelineContains(id))).
+ * Частая проверка ленты: timelineContains(id) - в ленте есть твит с id_str == id.
+ * */
+
+public class GPathMatcher extends TypeSafeDiagnosingMatcher<Object> {
+	private final GPath path;
+	private final Object[] arguments;
+	private final Matcher<?> matcher;
+
+	public GPathMatcher(GPath path, Matcher<?> matcher, Object... arguments)
+	{
+		this.path = path;
+		this.arguments = arguments;
+		this.matcher = matcher;
+	}
+
+	public static GPathMatcher timelineContains(String id)
+	{
+		return new GPathMatcher(GPath.TWEET_BY_ID, notNullValue(), id);
+	}
+
+	@Override
+	protected boolean matchesSafely(Object json, Description mismatch)
+	{
+		Object value = path.evaluate(json instanceof String ? GPath.parse((String) json) : json, arguments);
+		if(matcher.matches(value))
+			return true;
+		mismatch.appendText(path.describe(arguments)).appendText(" ");
+		matcher.describeMismatch(value, mismatch);
+		return false;
+	}
+
+	@Override
+	public void describeTo(Description description)
+	{
+		description.appendText(path.describe(arguments)).appendText(" ").appendDescriptionOf(matcher);
+	}
+}
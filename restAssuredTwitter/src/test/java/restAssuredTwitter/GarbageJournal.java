@@ -0,0 +1,207 @@
+package restAssuredTwitter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Журнал созданных в тестах твитов, который переживает падение JVM.
+ * В файл дописываются записи двух видов:
+ *   +id_твита автор  - твит создан и ждёт удаления;
+ *   -id_твита        - твит удалён.
+ * Запись сразу уходит в файл через FileChannel (при падении JVM она остаётся в кэше ОС),
+ * а fsync выполняется пачками - фоновым потоком не чаще раза в syncMillis миллисекунд.
+ * При открытии журнал читается, твиты без отметки об удалении становятся "оставшимися" (getLeftovers()),
+ * и файл переписывается так, чтобы в нём были только они - журнал не растёт от прогона к прогону.
+ * Недописанная последняя строка (JVM упала посреди записи) игнорируется.
+ * Журнал захватывается блокировкой файла <журнал>.lock (FileChannel.tryLock), чтоб две JVM (например, параллельные форки surefire)
+ * не перемешивали записи в одном файле. Если журнал занят, JVM берёт следующий свободный: <журнал>.1, <журнал>.2, ...
+ * При открытии журнал забирает себе остатки из незанятых соседних журналов (их JVM уже завершились) и удаляет эти файлы.
+ * */
+
+public class GarbageJournal implements Closeable {
+	private final Path path;
+	//блокировка журнала, держится до close()
+	private final FileLock lock;
+	private final FileChannel channel;
+	private final ScheduledExecutorService syncer;
+	//твиты, оставшиеся от предыдущих прогонов: id_твита -> автор
+	private final Map<String, String> leftovers;
+	//есть ли записи, для которых ещё не выполнен fsync
+	private boolean dirty;
+
+	public GarbageJournal(Path path, long syncMillis) throws IOException
+	{
+		Files.createDirectories(path.toAbsolutePath().getParent());
+		Path free = path;
+		FileLock taken = tryLock(free);
+		for(int i = 1; taken == null; i++)
+		{
+			free = path.resolveSibling(path.getFileName() + "." + i);
+			taken = tryLock(free);
+		}
+		this.path = free;
+		this.lock = taken;
+		Map<String, String> live = read(free);
+		//соседние журналы остаются заблокированными, пока их остатки не перенесены в этот журнал и сами файлы не удалены
+		Map<Path, FileLock> adopted = adopt(path, live);
+		this.leftovers = Collections.unmodifiableMap(live);
+		compact();
+		for(Map.Entry<Path, FileLock> orphan : adopted.entrySet())
+		{
+			Files.deleteIfExists(orphan.getKey());
+			orphan.getValue().release();
+			orphan.getValue().channel().close();
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "garbage-journal-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+	}
+
+	//твиты, созданные в предыдущих прогонах и так и не удалённые
+	public Map<String, String> getLeftovers()
+	{
+		return leftovers;
+	}
+
+	//отмечаем создание твита
+	public void created(String id_str, String name)
+	{
+		append("+" + id_str + " " + name + "\n");
+	}
+
+	//отмечаем удаление твита
+	public void deleted(String id_str)
+	{
+		append("-" + id_str + "\n");
+	}
+
+	//fsync всех записей, сделанных с момента предыдущего вызова
+	public synchronized void sync()
+	{
+		if(!dirty || !channel.isOpen())
+			return;
+		try {
+			channel.force(false);
+			dirty = false;
+		} catch(IOException e) {
+			System.err.println("Unable to sync " + path + ": " + e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		syncer.shutdownNow();
+		sync();
+		channel.close();
+		lock.release();
+		lock.channel().close();
+	}
+
+	private synchronized void append(String record)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+		try {
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+			dirty = true;
+		} catch(IOException e) {
+			//журнал - страховка, из-за него тест падать не должен
+			System.err.println("Unable to write to " + path + ": " + e);
+		}
+	}
+
+	//переписываем файл, оставляя в нём только неудалённые твиты
+	private void compact() throws IOException
+	{
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		StringBuilder records = new StringBuilder();
+		for(Map.Entry<String, String> pair : leftovers.entrySet())
+			records.append('+').append(pair.getKey()).append(' ').append(pair.getValue()).append('\n');
+		Files.write(tmp, records.toString().getBytes(StandardCharsets.UTF_8));
+		try(FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			tmpChannel.force(true);
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	//блокировка журнала path через файл path.lock, null - если журнал занят
+	private static FileLock tryLock(Path path) throws IOException
+	{
+		FileChannel channel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			FileLock lock = channel.tryLock();
+			if(lock != null)
+				return lock;
+		} catch(OverlappingFileLockException e) {
+			//журнал уже открыт в этой же JVM
+		}
+		channel.close();
+		return null;
+	}
+
+	//добавляем в live остатки из незанятых соседних журналов <журнал>.N, возвращаем их файлы вместе с захваченными блокировками
+	private static Map<Path, FileLock> adopt(Path path, Map<String, String> live) throws IOException
+	{
+		Map<Path, FileLock> adopted = new LinkedHashMap<Path, FileLock>();
+		try(DirectoryStream<Path> siblings = Files.newDirectoryStream(path.toAbsolutePath().getParent(), path.getFileName() + ".[0-9]*")) {
+			for(Path sibling : siblings)
+			{
+				if(sibling.getFileName().toString().endsWith(".lock") || sibling.getFileName().toString().endsWith(".tmp"))
+					continue;
+				FileLock lock = tryLock(sibling);
+				if(lock == null)
+					continue;
+				live.putAll(read(sibling));
+				adopted.put(sibling, lock);
+			}
+		}
+		return adopted;
+	}
+
+	private static Map<String, String> read(Path path) throws IOException
+	{
+		Map<String, String> live = new LinkedHashMap<String, String>();
+		if(!Files.exists(path))
+			return live;
+
+		byte[] content = Files.readAllBytes(path);
+		int complete = content.length;
+		while(complete > 0 && content[complete - 1] != '\n')
+			complete--;
+
+		try(BufferedReader reader = new BufferedReader(new StringReader(new String(content, 0, complete, StandardCharsets.UTF_8)))) {
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				if(line.startsWith("+") && line.indexOf(' ') > 1)
+					live.put(line.substring(1, line.indexOf(' ')), line.substring(line.indexOf(' ') + 1));
+				else if(line.startsWith("-"))
+					live.remove(line.substring(1));
+			}
+		}
+		return live;
+	}
+}
@@ -0,0 +1,27 @@
+package restAssuredTwitter;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+
+/*
+ * Слушатель JUnit Platform, который подключается через META-INF/services/org.junit.platform.launcher.TestExecutionListener.
+ * Перед запуском тестов удаляет твиты, оставшиеся от прошлых прогонов (см. GarbageJournal),
+ * после завершения всех тестов выводит отчёт об удалении остатков и заготовок (GarbageTweetsHandler.report) и сбрасывает журнал на диск.
+ * */
+
+public class GarbageJournalListener implements TestExecutionListener {
+	@Override
+	public void testPlanExecutionStarted(TestPlan testPlan)
+	{
+		GarbageTweetsHandler.clearLeftovers();
+	}
+
+	@Override
+	public void testPlanExecutionFinished(TestPlan testPlan)
+	{
+		String report = GarbageTweetsHandler.report();
+		if(!report.isEmpty())
+			System.out.println(report);
+		GarbageTweetsHandler.closeJournal();
+	}
+}
@@ -2,59 +2,329 @@ package restAssuredTwitter;
 
 import static io.restassured.RestAssured.given;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import org.apache.http.HttpStatus;
 
-import io.restassured.authentication.OAuthSignature;
+import io.restassured.response.Response;
 
 
 /*
  * Класс в котором хранятся твиты, созданные в отдельно взятом тест-кейсе
  * после завершения выполнения тест-кейса, все созданные твиты должны быть удалены, чтоб не мешать повторным прогонам.
+ * Тест-кейсы могут выполняться параллельно, поэтому у каждого потока свой пул твитов:
+ * тест-кейс и его @AfterEach выполняются в одном потоке, и clearGarbage() удаляет только твиты своего тест-кейса.
+ * Автор твита хранится как TwitterAccount, поэтому для удаления сразу берётся готовая авторизованная спецификация запросов аккаунта.
+ * Твиты удаляются параллельно: у каждого аккаунта свой пул потоков, размер которого задаётся
+ * системным свойством garbage.parallelism (по умолчанию 4 одновременных запроса на аккаунт).
+ * Все созданные и удалённые твиты записываются в GarbageJournal (файл из свойства garbage.journal,
+ * по умолчанию garbage-<local|real|replay>.journal в каталоге проекта, вне target, чтоб его не стирал mvn clean). Если прошлый прогон не успел удалить свои твиты
+ * (JVM убита, тест завис), то перед запуском тестов clearLeftovers() удаляет их.
+ * Удалённые твиты тест-кейсов копятся и проверяются одним пакетом после набора тестов, запросами GET statuses/lookup (см. verifyDeleted(),
+ * TwitterAccountExtension, TweetLookup, до 100 твитов на запрос): твит, который всё ещё отдаётся, когда истёк срок ожидания Eventually,
+ * считается неудалённым, снова попадает в журнал, а набор тестов падает.
+ * Проверку можно отключить системным свойством garbage.verify=false.
+ * Если API недоступен и CircuitBreaker отклоняет запросы, удаление откладывается: твиты остаются в журнале до следующего прогона и попадают в общий список ошибок удаления.
+ * Ошибки удаления вне тест-кейсов (остатки прошлых прогонов, заготовки) не печатаются по ходу прогона, а копятся в report() (см. GarbageJournalListener).
  * */
 
 public class GarbageTweetsHandler {
-	//Скрытый мап, в котором бужут храниться пары id_твита : автор
-	private static Map<String, String> tweetsToRemove = new HashMap<String, String>();
-	//переменная класса, в котором хранятся ключи и токены
-	private static final AuthorizationDataStorage authData = new AuthorizationDataStorage();
-	
+	//количество одновременных запросов на удаление от одного аккаунта
+	private static final int PARALLELISM = Integer.getInteger("garbage.parallelism", 4);
+	//проверять ли удаление через statuses/lookup
+	private static final boolean VERIFY = !"false".equals(System.getProperty("garbage.verify"));
+	//Скрытый мап, в котором бужут храниться пары id_твита : автор, отдельный для каждого потока
+	private static final ThreadLocal<Map<String, TwitterAccount>> tweetsToRemove = ThreadLocal.withInitial(LinkedHashMap::new);
+	//твиты из пула, которые тест-кейс может удалить и сам: если такого твита уже нет, это не ошибка
+	private static final ThreadLocal<Set<String>> deletableByTest = ThreadLocal.withInitial(HashSet::new);
+	//удалённые, но ещё не проверенные твиты тест-кейсов: id_твита -> автор
+	private static final Map<String, TwitterAccount> unverified = new ConcurrentHashMap<String, TwitterAccount>();
+	//сообщения об удалении вне тест-кейсов для отчёта в конце прогона
+	private static final List<String> notes = Collections.synchronizedList(new ArrayList<String>());
+	//пулы потоков для удаления: автор -> пул
+	private static final Map<TwitterAccount, ExecutorService> executors = new ConcurrentHashMap<TwitterAccount, ExecutorService>();
+	//журнал созданных и удалённых твитов
+	private static final GarbageJournal journal = openJournal();
+
 	//Метод для добавления пары id_твита : автор в пул
-	public static void addTweet(String id_str, String name)
+	public static void addTweet(String id_str, TwitterAccount account)
 	{
-		tweetsToRemove.put(id_str, name);
+		journal.created(id_str, account.getName());
+		tweetsToRemove.get().put(id_str, account);
 	}
-	
-	//Публичный метод для запуска удаления твитов созданных в тест-кейсе
-	public static void clearGarbage()
+
+	/*
+	 * Добавляем в пул твит, полученный тест-кейсом из TweetFixturePool (в журнале он уже есть).
+	 * Тест-кейс может удалить такой твит сам, поэтому 404 NOT FOUND при удалении не считается ошибкой.
+	 * */
+	public static void addFixture(String id_str, TwitterAccount account)
+	{
+		tweetsToRemove.get().put(id_str, account);
+		deletableByTest.get().add(id_str);
+	}
+
+	/*
+	 * Записываем в журнал твит, который ещё не принадлежит ни одному тест-кейсу (заготовка из TweetFixturePool):
+	 * если прогон оборвётся, твит удалится вместе с остатками прогона. Тест-кейс, получивший твит, добавляет его через addFixture.
+	 * */
+	public static void journalTweet(String id_str, TwitterAccount account)
+	{
+		journal.created(id_str, account.getName());
+	}
+
+	//отмечаем в журнале твит, удалённый в обход GarbageTweetsHandler (например, через AsyncTwitterClient в LoadFlow)
+	public static void journalDeleted(String id_str)
 	{
-		
-		//в цикле проходим по всем элементам tweetsToRemove, определяем автора сообщения и передаём id_твита и данные для авторизации 
-		//в метод deleteTweet для выполнения удаления
-		for(Map.Entry<String, String> pair : tweetsToRemove.entrySet())
+		journal.deleted(id_str);
+	}
+
+	/*
+	 * Удаляем твиты, не принадлежащие тест-кейсам (например, неиспользованные заготовки TweetFixturePool), и ждём окончания удаления.
+	 * Как и для остатков прошлых прогонов, ошибки только попадают в отчёт report(), а твиты остаются в журнале.
+	 * */
+	public static void clearTweets(Map<String, TwitterAccount> tweets)
+	{
+		clearOutsideTests(tweets);
+	}
+
+	/*
+	 * Удаляем твиты, которые остались в журнале от предыдущих прогонов. Вызывается один раз перед запуском тестов (см. GarbageJournalListener).
+	 * Ошибки не прерывают прогон, а только попадают в отчёт report(): такие твиты останутся в журнале до следующего прогона.
+	 * */
+	public static void clearLeftovers()
+	{
+		Map<String, String> leftovers = journal.getLeftovers();
+		if(leftovers.isEmpty())
+			return;
+
+		//в журнале автор записан именем, находим его аккаунт
+		Map<String, TwitterAccount> tweets = new LinkedHashMap<String, TwitterAccount>();
+		for(Map.Entry<String, String> pair : leftovers.entrySet())
 		{
-			if(pair.getValue().equals(authData.consumer_1_Name))
-				deleteTweet(pair.getKey(), authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret);
+			TwitterAccount account = TwitterAccounts.byName(pair.getValue());
+			if(account != null)
+				tweets.put(pair.getKey(), account);
 			else
-				deleteTweet(pair.getKey(), authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2);	
-		}
-		
-		//очищаем список после того как все твиты были удалены
-		tweetsToRemove.clear();
-	}
-	
-	//в методе выполняем запрос POST /destroy/tweet_id.json для удаления необходимого твита
-	private static void deleteTweet(String id_str, String key, String secret, String appToken, String appSecret)
-	{
-		given().
-		auth().
-		oauth(key, secret, appToken, appSecret, OAuthSignature.HEADER).
-		pathParam("id_str", id_str).									
-		with().
-		post("https://api.twitter.com/1.1/statuses/destroy/{id_str}.json").
-		then().
-		statusCode(HttpStatus.SC_OK);
+				notes.add("Skipped leftover tweet " + pair.getKey() + ": unknown account " + pair.getValue());
+		}
+
+		if(clearOutsideTests(tweets))
+			notes.add("Deleted " + tweets.size() + " tweets left by previous runs");
+	}
+
+	//удаляем и сразу проверяем твиты вне тест-кейсов, ошибки - в отчёт; true, если всё удалено
+	private static boolean clearOutsideTests(Map<String, TwitterAccount> tweets)
+	{
+		Map<String, TwitterAccount> gone = new ConcurrentHashMap<String, TwitterAccount>();
+		boolean deleted = true;
+		try {
+			deleteTweets(tweets, id_str -> true, gone).join();
+		} catch(CompletionException e) {
+			notes.add(e.getCause().getMessage());
+			deleted = false;
+		}
+		try {
+			verify(gone);
+		} catch(AssertionError e) {
+			notes.add(e.getMessage());
+			deleted = false;
+		}
+		return deleted;
+	}
+
+	//сообщения об удалении остатков прошлых прогонов и заготовок за прогон, пустая строка - если их не было
+	public static String report()
+	{
+		synchronized(notes)
+		{
+			return String.join(System.lineSeparator(), notes);
+		}
+	}
+
+	/*
+	 * Публичный метод для запуска удаления твитов созданных в тест-кейсе.
+	 * Дожидается удаления всех твитов; если какие-то твиты удалить не удалось, бросает один AssertionError со списком всех ошибок.
+	 * */
+	public static void clearGarbage()
+	{
+		try {
+			clearGarbageAsync().join();
+		} catch(CompletionException e) {
+			if(e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
+	/*
+	 * Асинхронный вариант clearGarbage(): запускает удаление твитов текущего тест-кейса и сразу возвращает управление.
+	 * Future завершается, когда обработаны все твиты, или завершается с AssertionError, если часть твитов удалить не удалось.
+	 * */
+	public static CompletableFuture<Void> clearGarbageAsync()
+	{
+		//забираем твиты текущего тест-кейса и сразу очищаем пул, чтоб следующий тест-кейс в этом потоке начинал с пустого пула
+		Map<String, TwitterAccount> tweets = new LinkedHashMap<String, TwitterAccount>(tweetsToRemove.get());
+		Set<String> deletable = new HashSet<String>(deletableByTest.get());
+		tweetsToRemove.get().clear();
+		deletableByTest.get().clear();
+		return deleteTweets(tweets, deletable::contains, unverified);
+	}
+
+	//закрываем журнал в конце прогона
+	public static void closeJournal()
+	{
+		try {
+			journal.close();
+		} catch(IOException e) {
+			System.err.println("Unable to close garbage journal: " + e);
+		}
+	}
+
+	/*
+	 * Параллельно удаляем твиты из мапа id_твита : автор.
+	 * missingIsOk - для каких твитов 404 NOT FOUND (твита уже нет) не ошибка: остатки прошлых прогонов, заготовки из TweetFixturePool.
+	 * unconfirmed - куда добавить удалённые твиты для проверки через verify.
+	 * */
+	private static CompletableFuture<Void> deleteTweets(Map<String, TwitterAccount> tweets, Predicate<String> missingIsOk, Map<String, TwitterAccount> unconfirmed)
+	{
+		//каждый твит удаляется методом deleteTweet в пуле потоков его автора
+		List<CompletableFuture<String>> deletions = new ArrayList<CompletableFuture<String>>();
+		//твиты, которых после запроса на удаление больше нет (200 OK или 404 NOT FOUND): id_твита -> автор
+		Map<String, TwitterAccount> gone = new ConcurrentHashMap<String, TwitterAccount>();
+		for(Map.Entry<String, TwitterAccount> pair : tweets.entrySet())
+		{
+			String id_str = pair.getKey();
+			TwitterAccount account = pair.getValue();
+			deletions.add(CompletableFuture.supplyAsync(() -> deleteTweet(id_str, missingIsOk.test(id_str), account, gone), executor(account)));
+		}
+
+		//собираем все ошибки в один отчёт
+		return CompletableFuture.allOf(deletions.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+			List<String> failures = new ArrayList<String>();
+			for(CompletableFuture<String> deletion : deletions)
+			{
+				if(deletion.join() != null)
+					failures.add(deletion.join());
+			}
+			if(VERIFY)
+				unconfirmed.putAll(gone);
+			if(!failures.isEmpty())
+				throw new AssertionError("Failed to delete " + failures.size() + " of " + deletions.size() + " tweets:\n" + String.join("\n", failures));
+		});
+	}
+
+	/*
+	 * в методе выполняем запрос POST /destroy/tweet_id.json для удаления необходимого твита
+	 * возвращает null, если твит удалён (200 OK), иначе - описание ошибки
+	 * если твита больше нет (200 OK или 404 NOT FOUND), в журнал записывается отметка об удалении, а твит - в gone для проверки
+	 * */
+	private static String deleteTweet(String id_str, boolean missingIsOk, TwitterAccount account, Map<String, TwitterAccount> gone)
+	{
+		try {
+			Response response = given(account.statusesSpec()).
+					pathParam("id_str", id_str).
+					with().
+					post("/destroy/{id_str}.json");
+
+			boolean missing = response.statusCode() == HttpStatus.SC_NOT_FOUND;
+			if(response.statusCode() == HttpStatus.SC_OK || missing)
+			{
+				journal.deleted(id_str);
+				gone.put(id_str, account);
+			}
+			if(response.statusCode() == HttpStatus.SC_OK || missing && missingIsOk)
+				return null;
+			return id_str + ": " + response.statusLine() + " " + response.asString();
+		} catch(CircuitBreaker.OpenException e) {
+			//твит остаётся в журнале, его удалит clearLeftovers() следующего прогона
+			return id_str + ": deferred to the next run (" + e.getMessage() + ")";
+		} catch(RuntimeException e) {
+			return id_str + ": " + e;
+		}
+	}
+
+	/*
+	 * Проверяем одним пакетом, что удалённых тест-кейсами твитов действительно больше нет. Вызывается после каждого набора тестов
+	 * (см. TwitterAccountExtension) и проверяет всё, что накопилось к этому моменту; если удаление каких-то твитов не подтвердилось,
+	 * бросает, как и clearGarbage(), один AssertionError со списком всех ошибок.
+	 * */
+	public static void verifyDeleted()
+	{
+		Map<String, TwitterAccount> gone = new LinkedHashMap<String, TwitterAccount>(unverified);
+		unverified.keySet().removeAll(gone.keySet());
+		verify(gone);
+	}
+
+	/*
+	 * Твиты каждого автора запрашиваются пачками через statuses/lookup, а те, что ещё отдаются, перепроверяются до срока Eventually.
+	 * Твиты, удаление которых не подтвердилось, снова записываются в журнал, чтоб их удалил следующий прогон.
+	 * */
+	private static void verify(Map<String, TwitterAccount> gone)
+	{
+		if(gone.isEmpty())
+			return;
+
+		//автор -> ещё не подтверждённые твиты
+		Map<TwitterAccount, Set<String>> remaining = new LinkedHashMap<TwitterAccount, Set<String>>();
+		for(Map.Entry<String, TwitterAccount> pair : gone.entrySet())
+			remaining.computeIfAbsent(pair.getValue(), key -> new LinkedHashSet<String>()).add(pair.getKey());
+		try {
+			Eventually.await(gone.size() + " deleted tweets missing from GET statuses/lookup", () -> {
+				for(Map.Entry<TwitterAccount, Set<String>> author : remaining.entrySet())
+					author.getValue().removeAll(TweetLookup.of(author.getKey()).missing(author.getValue()));
+				return remaining.values().stream().allMatch(Set::isEmpty);
+			});
+		} catch(CircuitBreaker.OpenException | AssertionError e) {
+			List<String> failures = new ArrayList<String>();
+			for(Map.Entry<TwitterAccount, Set<String>> author : remaining.entrySet())
+			{
+				for(String id_str : author.getValue())
+				{
+					journal.created(id_str, author.getKey().getName());
+					failures.add(id_str + (e instanceof AssertionError ? ": still present after destroy (" : ": not verified (") + e.getMessage() + ")");
+				}
+			}
+			throw new AssertionError("Failed to verify deletion of " + failures.size() + " of " + gone.size() + " tweets:\n" + String.join("\n", failures));
+		}
+	}
+
+	private static GarbageJournal openJournal()
+	{
+		String path = System.getProperty("garbage.journal", "garbage-" + TwitterEndpoints.targetName() + ".journal");
+		try {
+			return new GarbageJournal(Paths.get(path), Long.getLong("garbage.journal.syncMillis", 100));
+		} catch(IOException e) {
+			throw new UncheckedIOException("Unable to open garbage journal " + path, e);
+		}
+	}
+
+	//пул потоков для удаления твитов аккаунта, создаётся при первом обращении
+	private static ExecutorService executor(TwitterAccount account)
+	{
+		return executors.computeIfAbsent(account, key -> {
+			AtomicInteger threads = new AtomicInteger();
+			return Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+				Thread thread = new Thread(runnable, "garbage-" + key.getName() + "-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		});
 	}
 }
@@ -0,0 +1,198 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.AuthenticationStrategy;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.RedirectStrategy;
+import org.apache.http.client.RequestDirector;
+import org.apache.http.client.UserTokenHandler;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import io.restassured.config.HttpClientConfig;
+
+/*
+ * Общий на всю JVM пул HTTP-соединений с поддержкой keep-alive.
+ * По умолчанию REST Assured создаёт для каждого запроса новый HttpClient со своим соединением,
+ * и к api.twitter.com/upload.twitter.com каждый раз заново устанавливается TLS-соединение.
+ * Здесь каждый запрос по-прежнему получает свой HttpClient (REST Assured меняет его настройки, поэтому один клиент на все потоки делить нельзя),
+ * но все клиенты берут соединения из одного потокобезопасного PoolingClientConnectionManager.
+ * REST Assured читает тело ответа только при обращении к нему, а тесты, которые проверяют только статус, его не читают вовсе,
+ * и соединение так и оставалось бы занятым. Поэтому тело ответа сразу буферизуется, и соединение возвращается в пул.
+ * Выполнение запроса в клиенте обёрнуто RateLimitScheduler.wrap: он следит за заголовками x-rate-limit-* и повторяет запрос после 429.
+ * Настройки задаются системными свойствами:
+ *   http.pool.maxPerRoute      - максимум соединений к одному хосту (по умолчанию 20);
+ *   http.pool.maxTotal         - максимум соединений всего (по умолчанию 100);
+ *   http.pool.keepAliveSeconds - сколько держать соединение открытым, если сервер не указал иное (по умолчанию 30);
+ *   http.pool.idleSeconds      - через сколько секунд простоя соединение закрывается (по умолчанию 30);
+ *   http.connectTimeoutMillis  - таймаут установки соединения (по умолчанию 10000);
+ *   http.readTimeoutMillis     - таймаут чтения ответа (по умолчанию 30000);
+ *   http.<адрес>.connectTimeoutMillis, http.<адрес>.readTimeoutMillis - таймауты отдельного адреса API (api или upload,
+ *                                см. TwitterEndpoints) вместо общих; у upload таймаут чтения по умолчанию 60000 - части файла до 5 МБ.
+ * Таймаут считается ошибкой адреса для CircuitBreaker: после нескольких подряд запросы к адресу перестают ждать таймаутов.
+ * Счётчики отправленных запросов и открытых соединений (вместе с запросами AsyncTwitterClient) выводятся в конце прогона (см. HttpConnectionStatsListener).
+ * */
+
+//httpClientFactory в REST Assured 3.0.7 принимает только AbstractHttpClient, поэтому DefaultHttpClient и PoolingClientConnectionManager
+@SuppressWarnings("deprecation")
+public class HttpConnectionPool {
+	private static final int MAX_PER_ROUTE = Integer.getInteger("http.pool.maxPerRoute", 20);
+	private static final int MAX_TOTAL = Integer.getInteger("http.pool.maxTotal", 100);
+	private static final long KEEP_ALIVE_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("http.pool.keepAliveSeconds", 30));
+	private static final long IDLE_SECONDS = Long.getLong("http.pool.idleSeconds", 30);
+	private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger("http.connectTimeoutMillis", 10000);
+	private static final int READ_TIMEOUT_MILLIS = Integer.getInteger("http.readTimeoutMillis", 30000);
+	//у upload.twitter.com общий таймаут чтения, если он задан, иначе - свой, больше
+	private static final int UPLOAD_READ_TIMEOUT_MILLIS = Integer.getInteger("http.readTimeoutMillis", 60000);
+
+	//счётчики: отправлено запросов и открыто новых соединений, остальные запросы ушли по уже открытым соединениям
+	private static final AtomicLong requests = new AtomicLong();
+	private static final AtomicLong opened = new AtomicLong();
+
+	private static final PoolingClientConnectionManager manager = createManager();
+	//адрес API -> настройка HttpClient с его таймаутами
+	private static final Map<String, HttpClientConfig> endpointConfigs = new ConcurrentHashMap<String, HttpClientConfig>();
+
+	//настройка HttpClient для REST Assured, которая использует общий пул соединений, с таймаутами адреса endpoint (http.<endpoint>.connectTimeoutMillis и http.<endpoint>.readTimeoutMillis)
+	public static HttpClientConfig httpClientConfig(String endpoint)
+	{
+		return endpointConfigs.computeIfAbsent(endpoint, key -> config(connectTimeoutMillis(key), readTimeoutMillis(key)));
+	}
+
+	//таймауты адреса endpoint, их же использует AsyncTwitterClient
+	static int connectTimeoutMillis(String endpoint)
+	{
+		return Integer.getInteger("http." + endpoint + ".connectTimeoutMillis", CONNECT_TIMEOUT_MILLIS);
+	}
+
+	static int readTimeoutMillis(String endpoint)
+	{
+		return Integer.getInteger("http." + endpoint + ".readTimeoutMillis", endpoint.equals(TwitterEndpoints.UPLOAD_ENDPOINT) ? UPLOAD_READ_TIMEOUT_MILLIS : READ_TIMEOUT_MILLIS);
+	}
+
+	//у AsyncTwitterClient свой пул соединений, но его запросы и соединения учитываются в тех же счётчиках
+	static void requestSent()
+	{
+		requests.incrementAndGet();
+	}
+
+	static void connectionOpened()
+	{
+		opened.incrementAndGet();
+	}
+
+	public static long requestsSent()
+	{
+		return requests.get();
+	}
+
+	//краткая сводка для отчёта
+	public static String stats()
+	{
+		long sent = requests.get();
+		long created = opened.get();
+		return String.format("HTTP connections: %d requests, %d connections opened, %d requests on reused connections",
+				sent, created, Math.max(sent - created, 0));
+	}
+
+	private static HttpClientConfig config(int connectTimeoutMillis, int readTimeoutMillis)
+	{
+		return HttpClientConfig.httpClientConfig().
+				httpClientFactory(HttpConnectionPool::createClient).
+				setParam(CoreConnectionPNames.CONNECTION_TIMEOUT, connectTimeoutMillis).
+				setParam(CoreConnectionPNames.SO_TIMEOUT, readTimeoutMillis);
+	}
+
+	private static DefaultHttpClient createClient()
+	{
+		DefaultHttpClient client = new DefaultHttpClient(manager) {
+			@Override
+			protected RequestDirector createClientRequestDirector(HttpRequestExecutor requestExec, ClientConnectionManager conman, ConnectionReuseStrategy reustrat,
+					ConnectionKeepAliveStrategy kastrat, HttpRoutePlanner rouplan, HttpProcessor httpProcessor, HttpRequestRetryHandler retryHandler,
+					RedirectStrategy redirectStrategy, AuthenticationStrategy targetAuthStrategy, AuthenticationStrategy proxyAuthStrategy,
+					UserTokenHandler userTokenHandler, HttpParams params)
+			{
+				//повтор запросов после 429 TOO MANY REQUESTS (см. RateLimitScheduler)
+				return RateLimitScheduler.wrap(super.createClientRequestDirector(requestExec, conman, reustrat, kastrat, rouplan, httpProcessor,
+						retryHandler, redirectStrategy, targetAuthStrategy, proxyAuthStrategy, userTokenHandler, params));
+			}
+		};
+		client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context)
+			{
+				//сервер мог указать свой срок в заголовке Keep-Alive, но не держим соединение дольше заданного
+				long duration = super.getKeepAliveDuration(response, context);
+				return duration > 0 ? Math.min(duration, KEEP_ALIVE_MILLIS) : KEEP_ALIVE_MILLIS;
+			}
+		});
+		client.addRequestInterceptor((request, context) -> requests.incrementAndGet());
+		client.addResponseInterceptor((response, context) -> {
+			HttpEntity entity = response.getEntity();
+			if(entity != null && entity.isStreaming())
+				response.setEntity(new BufferedHttpEntity(entity));
+		});
+		return client;
+	}
+
+	private static PoolingClientConnectionManager createManager()
+	{
+		PoolingClientConnectionManager manager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault()) {
+			@Override
+			protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry)
+			{
+				//считаем каждое новое соединение
+				return new DefaultClientConnectionOperator(schemeRegistry) {
+					@Override
+					public void openConnection(OperatedClientConnection connection, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException
+					{
+						super.openConnection(connection, target, local, context, params);
+						opened.incrementAndGet();
+					}
+				};
+			}
+		};
+		manager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+		manager.setMaxTotal(MAX_TOTAL);
+
+		//фоновый поток закрывает соединения с истёкшим keep-alive и простаивающие дольше IDLE_SECONDS
+		ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "http-pool-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(IDLE_SECONDS / 2, 1);
+		evictor.scheduleWithFixedDelay(() -> {
+			manager.closeExpiredConnections();
+			manager.closeIdleConnections(IDLE_SECONDS, TimeUnit.SECONDS);
+		}, period, period, TimeUnit.SECONDS);
+		return manager;
+	}
+}
@@ -0,0 +1,21 @@
+package restAssuredTwitter;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+
+/*
+ * Слушатель JUnit Platform, который подключается через META-INF/services/org.junit.platform.launcher.TestExecutionListener.
+ * После завершения всех тестов выводит, сколько запросов было отправлено и сколько соединений для этого пришлось открыть (см. HttpConnectionPool),
+ * и выключатели, которые размыкались за прогон (см. CircuitBreaker).
+ * */
+
+public class HttpConnectionStatsListener implements TestExecutionListener {
+	@Override
+	public void testPlanExecutionFinished(TestPlan testPlan)
+	{
+		System.out.println(HttpConnectionPool.stats());
+		String breakers = CircuitBreaker.report();
+		if(!breakers.isEmpty())
+			System.out.println(breakers);
+	}
+}
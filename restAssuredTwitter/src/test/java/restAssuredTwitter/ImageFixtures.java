@@ -0,0 +1,135 @@
+package restAssuredTwitter;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/*
+ * Тестовые картинки для ImagesUploadingTestSuite весят несколько мегабайт и в репозиторий не попадают.
+ * Если картинки нужного размера нет среди ресурсов, создаём её сами: корректное изображение 1x1,
+ * дополненное до нужного размера служебными блоками (tEXt для PNG, COM для JPEG).
+ * Такой файл принимает и настоящий Twitter, и локальный заменитель.
+ * Файл кладётся рядом с остальными ресурсами (target/test-classes), поэтому дальше его можно получить через TestResources.
+ * */
+
+public class ImageFixtures {
+	//ресурс, по которому находим каталог с тестовыми ресурсами
+	private static final String ANCHOR_RESOURCE = "picLite.png";
+	//максимальный размер данных одного COM-сегмента JPEG
+	private static final int MAX_JPEG_COMMENT = 65533;
+
+	/*
+	 * Проверяем, что ресурс fileName существует, и создаём его размером size байт, если его нет.
+	 * Формат определяется по расширению: .png или .jpg
+	 * */
+	public static synchronized void ensureExists(String fileName, long size) throws IOException
+	{
+		ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+		if(classloader.getResource(fileName) != null)
+			return;
+
+		URL anchor = classloader.getResource(ANCHOR_RESOURCE);
+		Path file;
+		try {
+			file = Paths.get(anchor.toURI()).resolveSibling(fileName);
+		} catch(URISyntaxException e) {
+			throw new IOException("Unable to locate test resources directory", e);
+		}
+
+		Path tmp = Files.createTempFile(file.getParent(), fileName, ".tmp");
+		try(OutputStream os = Files.newOutputStream(tmp)) {
+			if(fileName.endsWith(".png"))
+				writePng(os, size);
+			else
+				writeJpeg(os, size);
+		}
+		Files.move(tmp, file);
+	}
+
+	//PNG: сигнатура и IHDR/IDAT картинки 1x1, затем блок tEXt с пробелами, затем IEND
+	private static void writePng(OutputStream os, long size) throws IOException
+	{
+		byte[] image = encode("png");
+		int iendLength = 12;
+		long padding = size - image.length - 12;
+		if(padding < "Comment".length() + 1)
+			throw new IOException("PNG fixture can't be smaller than " + (image.length + 20) + " bytes");
+
+		DataOutputStream out = new DataOutputStream(os);
+		out.write(image, 0, image.length - iendLength);
+
+		byte[] type = "tEXt".getBytes("US-ASCII");
+		byte[] keyword = "Comment\0".getBytes("US-ASCII");
+		CRC32 crc = new CRC32();
+		out.writeInt((int) padding);
+		out.write(type);
+		crc.update(type);
+		out.write(keyword);
+		crc.update(keyword);
+		byte[] spaces = spaces(8192);
+		for(long left = padding - keyword.length; left > 0; left -= spaces.length)
+		{
+			int chunk = (int) Math.min(left, spaces.length);
+			out.write(spaces, 0, chunk);
+			crc.update(spaces, 0, chunk);
+		}
+		out.writeInt((int) crc.getValue());
+
+		out.write(image, image.length - iendLength, iendLength);
+		out.flush();
+	}
+
+	//JPEG: маркер SOI, затем COM-сегменты с пробелами, затем остальная часть картинки 1x1
+	private static void writeJpeg(OutputStream os, long size) throws IOException
+	{
+		byte[] image = encode("jpg");
+		long padding = size - image.length;
+		if(padding < 4)
+			throw new IOException("JPEG fixture can't be smaller than " + (image.length + 4) + " bytes");
+
+		DataOutputStream out = new DataOutputStream(os);
+		out.write(image, 0, 2);
+		byte[] spaces = spaces(MAX_JPEG_COMMENT);
+		while(padding > 0)
+		{
+			//сегмент: FF FE, длина (2 байта, включая себя) и данные
+			long segment = Math.min(padding, MAX_JPEG_COMMENT + 4);
+			if(padding - segment > 0 && padding - segment < 4)
+				segment -= 4;
+			int data = (int) segment - 4;
+			out.writeShort(0xFFFE);
+			out.writeShort(data + 2);
+			out.write(spaces, 0, data);
+			padding -= segment;
+		}
+		out.write(image, 2, image.length - 2);
+		out.flush();
+	}
+
+	private static byte[] encode(String format) throws IOException
+	{
+		BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 0x1DA1F2);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, format, out);
+		return out.toByteArray();
+	}
+
+	private static byte[] spaces(int length)
+	{
+		byte[] spaces = new byte[length];
+		Arrays.fill(spaces, (byte) ' ');
+		return spaces;
+	}
+}
@@ -1,18 +1,14 @@
 package restAssuredTwitter;
 
-import static io.restassured.RestAssured.basePath;
-import static io.restassured.RestAssured.baseURI;
 import static io.restassured.RestAssured.given;
 import java.io.IOException;
-import java.io.InputStream;
 
-import org.apache.commons.codec.binary.Base64;
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 
-import io.restassured.authentication.OAuthSignature;
-import io.restassured.internal.util.IOUtils;
+import io.restassured.builder.MultiPartSpecBuilder;
 import io.restassured.response.Response;
 
 /*
@@ -20,21 +16,26 @@ import io.restassured.response.Response;
  * https://developer.twitter.com/en/docs/media/upload-media/api-reference/post-media-upload
  * После успешной отправки файла через POST media/upload в ответе приходит "media_id", 
  * который можно добавить к своему твиту при постинге POST statuses/update 
+ * Допустимый файл загружается по частям (см. ChunkedMediaUploader):
+ * https://developer.twitter.com/en/docs/media/upload-media/uploading-media/chunked-media-upload
+ * Слишком большой файл отправляется простой загрузкой одним запросом - для неё в документации описан ответ 413.
+ * Тестовый аккаунт выдаётся каждому тест-кейсу в аренду параметром account1 (см. TwitterAccountExtension), параллельные тест-кейсы работают с разными аккаунтами.
  * */
 
+@ExtendWith(TwitterAccountExtension.class)
 class ImagesUploadingTestSuite {
-	//Добавляем переменную класса AuthorizationDataStorage чтоб иметь доступ к данным, необходимым для авторизации.
-	static final AuthorizationDataStorage authData = new AuthorizationDataStorage();
+	//клиент для загрузки файлов по частям
+	static final ChunkedMediaUploader uploader = new ChunkedMediaUploader();
 				
 	/*
 	 * Начальные установки для набора тестов
 	 * */
 	@BeforeAll
-	static void setUp()
+	static void setUp() throws IOException
 	{
-		//устанавливаем стандартный путь для запросов на взаимодействие с твитами
-		baseURI = "https://upload.twitter.com";
-		basePath = "/1.1/media";
+		//картинки размером в несколько мегабайт не хранятся в репозитории, при необходимости создаём их
+		ImageFixtures.ensureExists("picNear5MB.png", 5 * 1024 * 1024 - 64 * 1024);
+		ImageFixtures.ensureExists("pic8MB.jpg", 8 * 1024 * 1024 + 64 * 1024);
 	}
 	
 	/*
@@ -44,18 +45,12 @@ class ImagesUploadingTestSuite {
 	 * в ответе должно придти 200 OK
 	 * */
 	@Test
-	void test01() throws IOException {
+	void test01(TwitterAccount account1) throws IOException {
 		String fileName = "picNear5MB.png";											//файл из src/test/resources с тестовой картинкой размером чуть меньше 5Mb
-		ClassLoader classloader = Thread.currentThread().getContextClassLoader();	
-		InputStream is = classloader.getResourceAsStream(fileName);
-		String data = Base64.encodeBase64String(IOUtils.toByteArray(is));
-		is.close();
 		
-		Response response = given().
-        auth().oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-        param("media_data", data).
-        when().
-        post("/upload.json");
+		//загружаем файл по частям (INIT/APPEND/FINALIZE): файл отображён в память один раз на прогон (см. TestResources), без base64 и без копии в куче
+		Response response = uploader.upload(() -> given(account1.mediaSpec()),
+				TestResources.stream(fileName), TestResources.size(fileName), "image/png");
 		
 		response.then().statusCode(HttpStatus.SC_OK);
 	}
@@ -68,18 +63,18 @@ class ImagesUploadingTestSuite {
 	 * NOTE: но, видимо, установленное ограничение отличается от указанного в документации, поэтому тест с 5.1Мб и 6Мб файлами фейлится. Не фейлится с файлом размером 8Мб+.
 	 * */
 	@Test
-	void test02() throws IOException {
+	void test02(TwitterAccount account1) throws IOException {
 		String fileName = "pic8MB.jpg";											//файл из src/test/resources с тестовой картинкой размером чуть больше 8Mb
-		ClassLoader classloader = Thread.currentThread().getContextClassLoader();	
-		InputStream is = classloader.getResourceAsStream(fileName);
-		String data = Base64.encodeBase64String(IOUtils.toByteArray(is));
-		is.close();
 		
-		Response response = given().
-        auth().oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-        param("media_data", data).
-        when().
-        post("/upload.json");
+		//простая загрузка одним запросом: файл передаётся в параметре media как есть (multipart), без base64 и без копии в куче (см. TestResources)
+		Response response = given(account1.mediaSpec()).
+				multiPart(new MultiPartSpecBuilder(TestResources.stream(fileName)).
+						controlName("media").
+						fileName(fileName).
+						mimeType("image/jpeg").
+						build()).
+				when().
+				post("/upload.json");
 		
 		response.then().statusCode(HttpStatus.SC_REQUEST_TOO_LONG);
 	}
@@ -0,0 +1,465 @@
+package restAssuredTwitter;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.restassured.response.Response;
+
+/*
+ * Извлечение отдельных полей из JSON за один проход по тексту ответа, без построения дерева объектов.
+ * response.jsonPath().get("id_str") разбирает весь ответ в объекты Groovy (и компилирует выражение GPath) ради одного поля,
+ * а каждая проверка then().body(...) делает это заново. Здесь набор путей компилируется один раз в дерево,
+ * текст ответа читается посимвольно, и создаются объекты только для значений по запрошенным путям -
+ * всё остальное (текст твита, user, entities и т.д.) пропускается без выделения памяти.
+ * Пути записываются через точку, [*] - все элементы массива, [0] - элемент с номером:
+ *   id_str, retweet_count, retweeted_status.id_str, entities.hashtags[*].text, entities.hashtags[0].indices[*], errors[*].code
+ * Значения те же, что отдаёт JsonPath: строки, Integer (или Long/BigInteger для больших чисел), Float (или Double, если число
+ * не помещается во float), Boolean, null.
+ * Пути могут заканчиваться в одном узле (entities.hashtags[0].text и entities.hashtags[*].text) - значение попадает в каждый из них.
+ * Если значение по пути - объект или массив, возвращается его текст JSON. Для путей с [*] возвращается список значений
+ * (пустой, если массив пуст).
+ * Путь, которого нет в ответе, в результат не попадает (get вернёт null).
+ * Проверки поверх этого - JsonFieldsMatcher. Если один ответ проверяется много раз разными выражениями, удобнее ParsedResponse.
+ * */
+
+public final class JsonFields {
+	//уже скомпилированные наборы путей
+	private static final Map<List<String>, JsonFields> compiled = new ConcurrentHashMap<List<String>, JsonFields>();
+
+	private final List<String> paths;
+	private final Node root = new Node();
+
+	private JsonFields(List<String> paths)
+	{
+		this.paths = paths;
+		for(String path : paths)
+			compile(path);
+		spread(root);
+	}
+
+	//извлекатель для набора путей, компилируется один раз
+	public static JsonFields of(String... paths)
+	{
+		return compiled.computeIfAbsent(Arrays.asList(paths), JsonFields::new);
+	}
+
+	//значение одного поля ответа
+	public static Object get(Response response, String path)
+	{
+		return of(path).read(response).get(path);
+	}
+
+	public static String getString(Response response, String path)
+	{
+		Object value = get(response, path);
+		return value == null ? null : value.toString();
+	}
+
+	public static int getInt(Response response, String path)
+	{
+		Object value = get(response, path);
+		if(!(value instanceof Number))
+			throw new IllegalArgumentException("No number at " + path + " in " + response.asString());
+		return ((Number) value).intValue();
+	}
+
+	public List<String> getPaths()
+	{
+		return paths;
+	}
+
+	public Map<String, Object> read(Response response)
+	{
+		return read(response.asString());
+	}
+
+	//путь -> значение для всех найденных в json путей
+	public Map<String, Object> read(String json)
+	{
+		ParseStats.parsed(json.length());
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		Parser parser = new Parser(json, values);
+		parser.value(root);
+		return values;
+	}
+
+	private void compile(String path)
+	{
+		Node node = root;
+		for(String segment : path.split("\\."))
+		{
+			int bracket = segment.indexOf('[');
+			String name = bracket < 0 ? segment : segment.substring(0, bracket);
+			if(!name.isEmpty())
+				node = node.fields.computeIfAbsent(name, key -> new Node());
+			if(bracket < 0)
+				continue;
+			String index = segment.substring(bracket + 1, segment.length() - 1);
+			if(index.equals("*"))
+			{
+				if(node.each == null)
+					node.each = new Node();
+				node = node.each;
+			}
+			else
+				node = node.elements.computeIfAbsent(Integer.valueOf(index), key -> new Node());
+		}
+		//у пути внутри массива значения собираются в список
+		if(path.contains("[*]"))
+			node.lists.add(path);
+		else
+			node.paths.add(path);
+	}
+
+	//пути через [*] относятся и к элементам, для которых есть свои пути через [0]: добавляем их в узлы этих элементов
+	private static void spread(Node node)
+	{
+		for(Node element : node.elements.values())
+		{
+			if(node.each != null)
+				merge(element, node.each);
+			spread(element);
+		}
+		for(Node field : node.fields.values())
+			spread(field);
+		if(node.each != null)
+			spread(node.each);
+	}
+
+	private static void merge(Node into, Node from)
+	{
+		for(String path : from.paths)
+		{
+			if(!into.paths.contains(path))
+				into.paths.add(path);
+		}
+		for(String path : from.lists)
+		{
+			if(!into.lists.contains(path))
+				into.lists.add(path);
+		}
+		for(Map.Entry<String, Node> pair : from.fields.entrySet())
+			merge(into.fields.computeIfAbsent(pair.getKey(), key -> new Node()), pair.getValue());
+		for(Map.Entry<Integer, Node> pair : from.elements.entrySet())
+			merge(into.elements.computeIfAbsent(pair.getKey(), key -> new Node()), pair.getValue());
+		if(from.each != null)
+		{
+			if(into.each == null)
+				into.each = new Node();
+			merge(into.each, from.each);
+		}
+	}
+
+	//узел дерева путей: поля объекта, элементы массива и пути, которые здесь заканчиваются
+	private static class Node {
+		final Map<String, Node> fields = new HashMap<String, Node>();
+		//[*]
+		Node each;
+		//[0], [1], ...
+		final Map<Integer, Node> elements = new HashMap<Integer, Node>();
+		//пути с одним значением и пути через [*], значения которых собираются в список
+		final List<String> paths = new ArrayList<String>(1);
+		final List<String> lists = new ArrayList<String>(1);
+
+		boolean isTarget()
+		{
+			return !paths.isEmpty() || !lists.isEmpty();
+		}
+	}
+
+	//однопроходный разбор: значения под узлом дерева путей, остальные пропускаются
+	private static class Parser {
+		private final String json;
+		private final Map<String, Object> values;
+		private int pos;
+
+		Parser(String json, Map<String, Object> values)
+		{
+			this.json = json;
+			this.values = values;
+		}
+
+		void value(Node node)
+		{
+			skipSpaces();
+			int start = pos;
+			char c = peek();
+			if(c == '{' && !node.fields.isEmpty())
+				object(node);
+			else if(c == '[' && (node.each != null || !node.elements.isEmpty()))
+				array(node);
+			else if(node.isTarget())
+			{
+				store(node, capture());
+				return;
+			}
+			else
+				skip();
+			//запрошены и сам объект, и поля внутри него
+			if(node.isTarget())
+				store(node, json.substring(start, pos));
+		}
+
+		private void store(Node node, Object value)
+		{
+			for(String path : node.paths)
+				values.put(path, value);
+			for(String path : node.lists)
+			{
+				@SuppressWarnings("unchecked")
+				List<Object> list = (List<Object>) values.computeIfAbsent(path, key -> new ArrayList<Object>());
+				list.add(value);
+			}
+		}
+
+		private void object(Node node)
+		{
+			pos++;
+			skipSpaces();
+			if(peek() == '}')
+			{
+				pos++;
+				return;
+			}
+			while(true)
+			{
+				skipSpaces();
+				String name = string();
+				skipSpaces();
+				expect(':');
+				Node child = node.fields.get(name);
+				if(child == null)
+				{
+					skipSpaces();
+					skip();
+				}
+				else
+					value(child);
+				skipSpaces();
+				char c = json.charAt(pos++);
+				if(c == '}')
+					return;
+				if(c != ',')
+					throw error("',' or '}'");
+			}
+		}
+
+		private void array(Node node)
+		{
+			//массив есть, значит для [*] будет список, даже если массив пуст
+			if(node.each != null)
+			{
+				for(String path : node.each.lists)
+					values.computeIfAbsent(path, key -> new ArrayList<Object>());
+			}
+			pos++;
+			skipSpaces();
+			if(peek() == ']')
+			{
+				pos++;
+				return;
+			}
+			for(int index = 0; ; index++)
+			{
+				Node element = node.elements.get(index);
+				if(element == null)
+					element = node.each;
+				if(element == null)
+				{
+					skipSpaces();
+					skip();
+				}
+				else
+					value(element);
+				skipSpaces();
+				char c = json.charAt(pos++);
+				if(c == ']')
+					return;
+				if(c != ',')
+					throw error("',' or ']'");
+			}
+		}
+
+		//значение по запрошенному пути: скаляр - в объект Java, объект или массив - текстом
+		private Object capture()
+		{
+			char c = peek();
+			if(c == '"')
+				return string();
+			if(c == '{' || c == '[')
+			{
+				int start = pos;
+				skip();
+				return json.substring(start, pos);
+			}
+			if(json.startsWith("true", pos))
+			{
+				pos += 4;
+				return Boolean.TRUE;
+			}
+			if(json.startsWith("false", pos))
+			{
+				pos += 5;
+				return Boolean.FALSE;
+			}
+			if(json.startsWith("null", pos))
+			{
+				pos += 4;
+				return null;
+			}
+			return number();
+		}
+
+		private Object number()
+		{
+			int start = pos;
+			boolean integer = true;
+			while(pos < json.length())
+			{
+				char c = json.charAt(pos);
+				if(c == '.' || c == 'e' || c == 'E')
+					integer = false;
+				else if(!(c >= '0' && c <= '9' || c == '-' || c == '+'))
+					break;
+				pos++;
+			}
+			String text = json.substring(start, pos);
+			if(text.isEmpty())
+				throw error("value");
+			//как в JsonPath: float, если число в него помещается
+			if(!integer)
+			{
+				float value = Float.parseFloat(text);
+				return Float.isInfinite(value) ? (Object) Double.valueOf(text) : (Object) value;
+			}
+			if(text.length() > 18)
+			{
+				BigInteger value = new BigInteger(text);
+				return value.bitLength() < 64 ? (Object) value.longValue() : value;
+			}
+			long value = Long.parseLong(text);
+			return value == (int) value ? (Object) (int) value : (Object) value;
+		}
+
+		private String string()
+		{
+			expect('"');
+			int start = pos;
+			//строка без экранированных символов - просто подстрока
+			while(true)
+			{
+				char c = json.charAt(pos);
+				if(c == '"')
+				{
+					pos++;
+					return json.substring(start, pos - 1);
+				}
+				if(c == '\\')
+					break;
+				pos++;
+			}
+			StringBuilder text = new StringBuilder(json.substring(start, pos));
+			while(true)
+			{
+				char c = json.charAt(pos++);
+				if(c == '"')
+					return text.toString();
+				if(c != '\\')
+				{
+					text.append(c);
+					continue;
+				}
+				char escaped = json.charAt(pos++);
+				switch(escaped)
+				{
+				case 'n': text.append('\n'); break;
+				case 't': text.append('\t'); break;
+				case 'r': text.append('\r'); break;
+				case 'b': text.append('\b'); break;
+				case 'f': text.append('\f'); break;
+				case 'u':
+					text.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+					pos += 4;
+					break;
+				default: text.append(escaped);
+				}
+			}
+		}
+
+		//пропускаем значение целиком, ничего не создавая
+		private void skip()
+		{
+			char c = peek();
+			if(c == '"')
+			{
+				skipString();
+				return;
+			}
+			if(c != '{' && c != '[')
+			{
+				while(pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0)
+					pos++;
+				return;
+			}
+			int depth = 0;
+			while(true)
+			{
+				c = json.charAt(pos);
+				if(c == '"')
+				{
+					skipString();
+					continue;
+				}
+				pos++;
+				if(c == '{' || c == '[')
+					depth++;
+				else if((c == '}' || c == ']') && --depth == 0)
+					return;
+			}
+		}
+
+		private void skipString()
+		{
+			pos++;
+			while(true)
+			{
+				char c = json.charAt(pos++);
+				if(c == '"')
+					return;
+				if(c == '\\')
+					pos++;
+			}
+		}
+
+		private void skipSpaces()
+		{
+			while(pos < json.length() && Character.isWhitespace(json.charAt(pos)))
+				pos++;
+		}
+
+		private char peek()
+		{
+			if(pos >= json.length())
+				throw error("value");
+			return json.charAt(pos);
+		}
+
+		private void expect(char c)
+		{
+			if(peek() != c)
+				throw error("'" + c + "'");
+			pos++;
+		}
+
+		private IllegalArgumentException error(String expected)
+		{
+			return new IllegalArgumentException("Malformed JSON: expected " + expected + " at position " + pos);
+		}
+	}
+}
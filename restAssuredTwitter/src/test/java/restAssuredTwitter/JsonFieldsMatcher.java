@@ -0,0 +1,79 @@
+package restAssuredTwitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeDiagnosingMatcher;
+
+/*
+ * Проверка нескольких полей JSON за один проход по ответу (см. JsonFields).
+ * Вместо цепочки response.then().body("id_str", ...).body("retweet_count", ...), где каждая проверка заново разбирает весь ответ:
+ *   response.then().body(jsonFields().
+ *           with("retweeted_status.id_str", equalTo(id)).
+ *           with("retweeted_status.retweet_count", equalTo(retweet_count + 1)));
+ * REST Assured передаёт в такую проверку текст ответа, поэтому её можно использовать и как assertThat(response.asString(), ...).
+ * Поля, которых нет в ответе, проверяются как null. В сообщении об ошибке перечислены все несовпавшие поля.
+ * */
+
+public class JsonFieldsMatcher extends TypeSafeDiagnosingMatcher<String> {
+	//путь -> проверка значения по этому пути
+	private final Map<String, Matcher<?>> matchers = new LinkedHashMap<String, Matcher<?>>();
+	private JsonFields fields;
+
+	//пустая проверка, поля добавляются через with
+	public static JsonFieldsMatcher jsonFields()
+	{
+		return new JsonFieldsMatcher();
+	}
+
+	//проверка одного поля
+	public static JsonFieldsMatcher jsonField(String path, Matcher<?> matcher)
+	{
+		return jsonFields().with(path, matcher);
+	}
+
+	public JsonFieldsMatcher with(String path, Matcher<?> matcher)
+	{
+		matchers.put(path, matcher);
+		fields = null;
+		return this;
+	}
+
+	@Override
+	protected boolean matchesSafely(String json, Description mismatch)
+	{
+		if(fields == null)
+			fields = JsonFields.of(matchers.keySet().toArray(new String[0]));
+		Map<String, Object> values = fields.read(json);
+
+		boolean matches = true;
+		for(Map.Entry<String, Matcher<?>> pair : matchers.entrySet())
+		{
+			Object value = values.get(pair.getKey());
+			if(pair.getValue().matches(value))
+				continue;
+			if(!matches)
+				mismatch.appendText(", ");
+			mismatch.appendText(pair.getKey()).appendText(" ");
+			pair.getValue().describeMismatch(value, mismatch);
+			matches = false;
+		}
+		return matches;
+	}
+
+	@Override
+	public void describeTo(Description description)
+	{
+		description.appendText("JSON with ");
+		boolean first = true;
+		for(Map.Entry<String, Matcher<?>> pair : matchers.entrySet())
+		{
+			if(!first)
+				description.appendText(", ");
+			description.appendText(pair.getKey()).appendText(" ").appendDescriptionOf(pair.getValue());
+			first = false;
+		}
+	}
+}
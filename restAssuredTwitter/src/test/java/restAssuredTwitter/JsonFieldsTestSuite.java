@@ -0,0 +1,65 @@
+package restAssuredTwitter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.restassured.path.json.JsonPath;
+
+/*
+ * Набор тестов для JsonFields: значения, извлечённые за один проход, должны совпадать с тем, что отдаёт JsonPath.
+ * Запросов к API нет, проверяется только разбор текста JSON.
+ * */
+
+class JsonFieldsTestSuite {
+	private static final String HASHTAGS = "{\"entities\":{\"hashtags\":[{\"text\":\"first\",\"indices\":[0,6]},{\"text\":\"second\",\"indices\":[7,14]}]}}";
+
+	/*
+	 * пути через [0] и через [*] заканчиваются в одном узле:
+	 * значение первого элемента должно попасть и в свой путь, и в список [*]
+	 * */
+	@Test
+	void test01()
+	{
+		Map<String, Object> values = JsonFields.of("a[0].b", "a[*].b").read("{\"a\":[{\"b\":1},{\"b\":2}]}");
+
+		assertThat(values.get("a[0].b"), equalTo(1));
+		assertThat(values.get("a[*].b"), equalTo(Arrays.asList(1, 2)));
+	}
+
+	/*
+	 * сочетание путей из описания JsonFields: entities.hashtags[0].indices[*] рядом с entities.hashtags[*].text
+	 * и entities.hashtags[0].text - результат тот же, что у JsonPath
+	 * */
+	@Test
+	void test02()
+	{
+		Map<String, Object> values = JsonFields.of("entities.hashtags[0].indices[*]", "entities.hashtags[*].text", "entities.hashtags[0].text").read(HASHTAGS);
+		JsonPath jsonPath = new JsonPath(HASHTAGS);
+
+		assertThat(values.get("entities.hashtags[0].indices[*]"), equalTo(jsonPath.get("entities.hashtags[0].indices")));
+		assertThat(values.get("entities.hashtags[*].text"), equalTo(jsonPath.get("entities.hashtags.text")));
+		assertThat(values.get("entities.hashtags[0].text"), equalTo(jsonPath.get("entities.hashtags[0].text")));
+	}
+
+	/*
+	 * числа с точкой - Float, как в JsonPath, и Double, только если число не помещается во float
+	 * */
+	@Test
+	void test03()
+	{
+		String json = "{\"small\":1.5,\"precise\":3.14159265358979,\"huge\":1e300}";
+		Map<String, Object> values = JsonFields.of("small", "precise", "huge").read(json);
+		JsonPath jsonPath = new JsonPath(json);
+
+		for(String path : Arrays.asList("small", "precise", "huge"))
+		{
+			Object expected = jsonPath.get(path);
+			assertThat(path, values.get(path), allOf(instanceOf(expected.getClass()), equalTo(expected)));
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import groovy.json.JsonOutput;
+import io.restassured.filter.Filter;
+
+/*
+ * Время ответа на каждый запрос, разложенное по запросам API.
+ * Фильтр filter() подключён ко всем спецификациям из TwitterEndpoints (а значит, и к спецификациям аккаунтов),
+ * поэтому в статистику попадают все запросы наборов тестов, сборщика мусора и нагрузочного прогона.
+ * Запросы группируются по методу и шаблону пути, как он записан в тесте: POST /update.json, POST /destroy/{id_str}.json,
+ * POST /retweet/{tweet_id}.json, GET /user_timeline.json, POST /upload.json и т.д. - id твитов на группировку не влияют.
+ * Время измеряется от отправки запроса до получения всего ответа (тело ответа читается сразу, см. HttpConnectionPool)
+ * и хранится в HdrHistogram с точностью до 3 значащих цифр, в микросекундах.
+ * В конце прогона report() выводит p50/p90/p99/max по каждому запросу, а writeSummary() записывает то же самое в JSON-файл
+ * (по умолчанию target/latency-<local|real|replay>.json, путь задаётся свойством latency.summary).
+ * */
+
+public class LatencyHistograms {
+	//метод и шаблон пути -> гистограмма, в микросекундах
+	private static final Map<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	private static final Filter filter = (request, response, context) -> {
+		long start = System.nanoTime();
+		try {
+			return context.next(request, response);
+		} finally {
+			record(request.getMethod() + " " + request.getUserDefinedPath(), System.nanoTime() - start);
+		}
+	};
+
+	//фильтр REST Assured, который измеряет время каждого запроса
+	public static Filter filter()
+	{
+		return filter;
+	}
+
+	//записываем время одного запроса, endpoint - метод и шаблон пути
+	public static void record(String endpoint, long nanos)
+	{
+		histograms.computeIfAbsent(endpoint, key -> new ConcurrentHistogram(3)).recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	//таблица с процентилями по каждому запросу
+	public static String report()
+	{
+		Map<String, Histogram> snapshot = snapshot();
+		if(snapshot.isEmpty())
+			return "Latency: no requests recorded";
+
+		StringBuilder report = new StringBuilder("Latency, ms:");
+		report.append(String.format("%n%-36s %7s %9s %9s %9s %9s", "request", "count", "p50", "p90", "p99", "max"));
+		for(Map.Entry<String, Histogram> pair : snapshot.entrySet())
+		{
+			Histogram histogram = pair.getValue();
+			report.append(String.format(Locale.ROOT, "%n%-36s %7d %9.1f %9.1f %9.1f %9.1f", pair.getKey(), histogram.getTotalCount(),
+					millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+					millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue())));
+		}
+		return report.toString();
+	}
+
+	/*
+	 * Записываем сводку в JSON-файл:
+	 * {"POST /update.json": {"count": 12, "mean_ms": 3.1, "p50_ms": 2.9, "p90_ms": 4.2, "p99_ms": 7.0, "max_ms": 7.0}, ...}
+	 * Возвращает путь к файлу.
+	 * */
+	public static Path writeSummary() throws IOException
+	{
+		Map<String, Object> summary = new LinkedHashMap<String, Object>();
+		for(Map.Entry<String, Histogram> pair : snapshot().entrySet())
+		{
+			Histogram histogram = pair.getValue();
+			Map<String, Object> endpoint = new LinkedHashMap<String, Object>();
+			endpoint.put("count", histogram.getTotalCount());
+			endpoint.put("mean_ms", millis(histogram.getMean()));
+			endpoint.put("p50_ms", millis(histogram.getValueAtPercentile(50)));
+			endpoint.put("p90_ms", millis(histogram.getValueAtPercentile(90)));
+			endpoint.put("p99_ms", millis(histogram.getValueAtPercentile(99)));
+			endpoint.put("max_ms", millis(histogram.getMaxValue()));
+			summary.put(pair.getKey(), endpoint);
+		}
+
+		Path path = Paths.get(System.getProperty("latency.summary", "target/latency-" + TwitterEndpoints.targetName() + ".json"));
+		if(path.toAbsolutePath().getParent() != null)
+			Files.createDirectories(path.toAbsolutePath().getParent());
+		Files.write(path, JsonOutput.prettyPrint(JsonOutput.toJson(summary)).getBytes(StandardCharsets.UTF_8));
+		return path;
+	}
+
+	//копии гистограмм, отсортированные по запросу: запросы могут продолжаться, пока строится отчёт
+	private static Map<String, Histogram> snapshot()
+	{
+		Map<String, Histogram> snapshot = new TreeMap<String, Histogram>();
+		for(Map.Entry<String, Histogram> pair : histograms.entrySet())
+			snapshot.put(pair.getKey(), pair.getValue().copy());
+		return snapshot;
+	}
+
+	private static double millis(double micros)
+	{
+		return Math.round(micros / 100.0) / 10.0;
+	}
+}
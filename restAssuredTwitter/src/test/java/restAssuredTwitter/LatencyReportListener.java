@@ -0,0 +1,24 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+
+/*
+ * Слушатель JUnit Platform, который подключается через META-INF/services/org.junit.platform.launcher.TestExecutionListener.
+ * После завершения всех тестов выводит время ответа по каждому запросу API и записывает сводку в файл (см. LatencyHistograms).
+ * */
+
+public class LatencyReportListener implements TestExecutionListener {
+	@Override
+	public void testPlanExecutionFinished(TestPlan testPlan)
+	{
+		System.out.println(LatencyHistograms.report());
+		try {
+			System.out.println("Latency summary: " + LatencyHistograms.writeSummary());
+		} catch(IOException e) {
+			System.err.println("Unable to write latency summary: " + e);
+		}
+	}
+}
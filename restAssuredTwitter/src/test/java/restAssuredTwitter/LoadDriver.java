@@ -0,0 +1,328 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Нагрузочный прогон: сценарии из наборов тестов (см. LoadFlow) выполняются в заданной пропорции
+ * несколькими виртуальными пользователями одновременно. Пользователи по очереди получают аккаунты из TwitterAccounts,
+ * второй аккаунт сценария - следующий по списку.
+ * Пользователь - не поток, а цепочка проходов: проходы выполняются через AsyncTwitterClient (см. LoadFlow), и следующий проход
+ * запускается в потоке, получившем последний ответ предыдущего. Пока проходы ждут ответов, они не занимают потоков,
+ * поэтому сотни пользователей обслуживают несколько потоков ввода-вывода HttpAsyncClient.
+ * Запуск (по умолчанию против локального заменителя, см. TwitterEndpoints):
+ *   mvn test-compile exec:java -Dload.users=16 -Dload.mix=tweet=6,retweet=2,delete=2 -Dload.rate=50
+ * Настройки задаются системными свойствами:
+ *   load.users           - число виртуальных пользователей (по умолчанию 8);
+ *   load.mix             - сценарии и их веса (по умолчанию tweet=6,retweet=2,delete=2);
+ *   load.rate            - сколько проходов сценариев в секунду запускать всего; 0 - замкнутый цикл:
+ *                          каждый пользователь начинает следующий проход сразу после предыдущего (по умолчанию 0);
+ *   load.warmupSeconds   - прогрев, его результаты в отчёт не попадают (по умолчанию 10);
+ *   load.durationSeconds - длительность измерения (по умолчанию 60).
+ * При заданном load.rate проходы запускаются по расписанию (поток load-dispatch), и если пользователи не успевают, проходы ждут в очереди:
+ * число пользователей - это предел одновременных проходов.
+ * Время прохода тогда считается от запланированного момента запуска, а не от фактического, иначе перегрузка
+ * выглядела бы в отчёте как нормальная работа. А попадает ли проход в отчёт, решает фактический момент запуска: при отставании
+ * в очереди остаются моменты времён прогрева, и по ним в отчёт не попало бы ничего.
+ * Для проверки прокси перед API его адрес задаётся свойством twitter.baseUri, а порт локального заменителя - twitter.local.port.
+ * В конце выводится отчёт: проходы, ошибки, пропускная способность и время прохода по каждому сценарию,
+ * а также время ответа по каждому запросу API (см. LatencyHistograms). Время запросов учитывается с самого начала, вместе с прогревом.
+ * */
+
+public class LoadDriver {
+	//сколько разных ошибок каждого сценария выводить в отчёт
+	private static final int MAX_ERROR_KINDS = 5;
+
+	private final int users;
+	private final Map<LoadFlow, Integer> mix;
+	private final double rate;
+	private final List<TwitterAccount> accounts = TwitterAccounts.all();
+
+	//сценарии и накопленные веса для выбора сценария
+	private final LoadFlow[] flows;
+	private final int[] cumulativeWeights;
+	private final Map<LoadFlow, FlowStats> stats = new EnumMap<LoadFlow, FlowStats>(LoadFlow.class);
+	//запланированные моменты запуска проходов и пользователи, которые их ждут (только при заданном rate)
+	private final Queue<Long> schedule = new ConcurrentLinkedQueue<Long>();
+	private final Queue<Integer> idle = new ConcurrentLinkedQueue<Integer>();
+	//момент запуска следующего прохода по расписанию, меняется только в потоке load-dispatch
+	private long nextStart;
+	//пользователи, закончившие работу после остановки прогона
+	private final CountDownLatch finished;
+
+	//в отчёт попадают только проходы, фактически начатые после measurementStart
+	private volatile long measurementStart = Long.MAX_VALUE;
+	private volatile boolean stopped;
+
+	public LoadDriver(int users, Map<LoadFlow, Integer> mix, double rate)
+	{
+		this.users = users;
+		this.mix = mix;
+		this.rate = rate;
+		this.finished = new CountDownLatch(users);
+
+		List<LoadFlow> weighted = new ArrayList<LoadFlow>();
+		List<Integer> weights = new ArrayList<Integer>();
+		int total = 0;
+		for(Map.Entry<LoadFlow, Integer> pair : mix.entrySet())
+		{
+			stats.put(pair.getKey(), new FlowStats());
+			if(pair.getValue() <= 0)
+				continue;
+			total += pair.getValue();
+			weighted.add(pair.getKey());
+			weights.add(total);
+		}
+		if(total == 0)
+			throw new IllegalArgumentException("load.mix must contain at least one flow with a positive weight");
+		flows = weighted.toArray(new LoadFlow[0]);
+		cumulativeWeights = new int[weights.size()];
+		for(int i = 0; i < cumulativeWeights.length; i++)
+			cumulativeWeights[i] = weights.get(i);
+	}
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		LoadDriver driver = new LoadDriver(Integer.getInteger("load.users", 8),
+				parseMix(System.getProperty("load.mix", "tweet=6,retweet=2,delete=2")),
+				Double.parseDouble(System.getProperty("load.rate", "0")));
+		//неподтверждённое удаление твитов роняет прогон, но после отчёта
+		AssertionError unverified = null;
+		try {
+			GarbageTweetsHandler.clearLeftovers();
+			driver.run(Long.getLong("load.warmupSeconds", 10), Long.getLong("load.durationSeconds", 60));
+		} finally {
+			try {
+				GarbageTweetsHandler.verifyDeleted();
+			} catch(AssertionError e) {
+				unverified = e;
+			}
+			GarbageTweetsHandler.closeJournal();
+			TwitterEndpoints.stopLocalServer();
+		}
+		String garbage = GarbageTweetsHandler.report();
+		if(!garbage.isEmpty())
+			System.out.println(garbage);
+		System.out.println(HttpConnectionPool.stats());
+		String breakers = CircuitBreaker.report();
+		if(!breakers.isEmpty())
+			System.out.println(breakers);
+		System.out.println(LatencyHistograms.report());
+		try {
+			System.out.println("Latency summary: " + LatencyHistograms.writeSummary());
+		} catch(IOException e) {
+			System.err.println("Unable to write latency summary: " + e);
+		}
+		if(unverified != null)
+			throw unverified;
+	}
+
+	/*
+	 * Разбираем строку вида tweet=6,retweet=2,delete=2
+	 * */
+	public static Map<LoadFlow, Integer> parseMix(String value)
+	{
+		Map<LoadFlow, Integer> mix = new LinkedHashMap<LoadFlow, Integer>();
+		for(String item : value.split(","))
+		{
+			String[] pair = item.trim().split("=");
+			LoadFlow flow = LoadFlow.byName(pair[0].trim());
+			if(flow == null || pair.length != 2)
+				throw new IllegalArgumentException("Bad load.mix item '" + item + "', expected <flow>=<weight> with flow one of tweet, retweet, delete");
+			mix.put(flow, Integer.valueOf(pair[1].trim()));
+		}
+		return mix;
+	}
+
+	//прогрев, измерение и отчёт
+	public void run(long warmupSeconds, long durationSeconds) throws InterruptedException
+	{
+		StringBuilder weights = new StringBuilder();
+		for(Map.Entry<LoadFlow, Integer> pair : mix.entrySet())
+			weights.append(weights.length() == 0 ? "" : ",").append(pair.getKey().getFlowName()).append('=').append(pair.getValue());
+		System.out.println(String.format("Load: %d users, %s, mix %s, warmup %d s, measurement %d s, target %s",
+				users, rate > 0 ? rate + " flows/s" : "closed loop", weights, warmupSeconds, durationSeconds, TwitterEndpoints.apiUri()));
+
+		ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "load-dispatch");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if(rate > 0)
+		{
+			for(int user = 0; user < users; user++)
+				idle.add(user);
+			nextStart = System.nanoTime();
+			dispatcher.scheduleAtFixedRate(this::dispatch, 0, Math.max((long) (TimeUnit.SECONDS.toNanos(1) / rate), 1), TimeUnit.NANOSECONDS);
+		}
+		else
+		{
+			for(int user = 0; user < users; user++)
+				user(user);
+		}
+
+		TimeUnit.SECONDS.sleep(warmupSeconds);
+		long requestsBefore = HttpConnectionPool.requestsSent();
+		measurementStart = System.nanoTime();
+		TimeUnit.SECONDS.sleep(durationSeconds);
+		long measured = System.nanoTime() - measurementStart;
+		long requests = HttpConnectionPool.requestsSent() - requestsBefore;
+
+		//даём пользователям закончить начатые проходы, а ждущие расписания заканчивают сразу
+		stopped = true;
+		dispatcher.shutdownNow();
+		for(Integer user = idle.poll(); user != null; user = idle.poll())
+			finished.countDown();
+		if(!finished.await(60, TimeUnit.SECONDS))
+			System.out.println("Some virtual users did not finish within 60 s");
+
+		report(measured, requests);
+	}
+
+	/*
+	 * Виртуальный пользователь: запускает проход и возвращает управление, а следующий проход запускается, когда закончится этот.
+	 * Проход, закончившийся сразу (например, CircuitBreaker отклонил первый запрос), не ставит продолжение,
+	 * а следующий запускается в цикле - иначе быстрые ошибки складывались бы во всё более глубокий стек вызовов.
+	 * При заданном rate пользователь, которому нечего запускать, встаёт в очередь idle, и его запустит dispatch().
+	 * */
+	private void user(int index)
+	{
+		TwitterAccount author = accounts.get(index % accounts.size());
+		TwitterAccount other = accounts.get((index + 1) % accounts.size());
+		while(true)
+		{
+			if(stopped)
+			{
+				finished.countDown();
+				return;
+			}
+			Long scheduled = rate > 0 ? schedule.poll() : null;
+			if(rate > 0 && scheduled == null)
+			{
+				idle.add(index);
+				//run() уже забрал свободных пользователей: кто встал в очередь после этого, заканчивает сам
+				if(stopped && idle.remove(index))
+					finished.countDown();
+				//пока пользователь вставал в очередь, dispatch() мог добавить проход и не застать его там
+				if(stopped || schedule.isEmpty() || !idle.remove(index))
+					return;
+				continue;
+			}
+			//время прохода - от запланированного момента, а в отчёт проход попадает по фактическому
+			long started = System.nanoTime();
+			long start = scheduled != null ? scheduled : started;
+
+			LoadFlow flow = pick();
+			CompletableFuture<Void> pass = flow.execute(author, other).whenComplete((done, error) -> {
+				if(started >= measurementStart)
+					stats.get(flow).record(System.nanoTime() - start, error == null ? null : AsyncTwitterClient.unwrap(error));
+			});
+			if(!pass.isDone())
+			{
+				pass.whenComplete((done, error) -> user(index));
+				return;
+			}
+		}
+	}
+
+	//планировщик: раз в 1/rate секунды кладёт в очередь момент запуска прохода и будит свободного пользователя
+	private void dispatch()
+	{
+		schedule.add(nextStart);
+		nextStart += (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+		Integer user = idle.poll();
+		if(user != null)
+			user(user);
+	}
+
+	//случайный сценарий с учётом весов
+	private LoadFlow pick()
+	{
+		int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for(int i = 0; ; i++)
+		{
+			if(value < cumulativeWeights[i])
+				return flows[i];
+		}
+	}
+
+	private void report(long measuredNanos, long requests)
+	{
+		double seconds = measuredNanos / 1e9;
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-10s %6s %8s %8s %7s %9s %9s %9s%n", "flow", "weight", "runs", "errors", "error%", "runs/s", "mean ms", "max ms"));
+		long totalRuns = 0;
+		long totalErrors = 0;
+		for(Map.Entry<LoadFlow, FlowStats> pair : stats.entrySet())
+		{
+			FlowStats flow = pair.getValue();
+			long runs = flow.runs.sum();
+			long errors = flow.errors.sum();
+			totalRuns += runs;
+			totalErrors += errors;
+			report.append(String.format(Locale.ROOT, "%-10s %6d %8d %8d %7.2f %9.2f %9.1f %9.1f%n", pair.getKey().getFlowName(), mix.get(pair.getKey()),
+					runs, errors, percent(errors, runs), runs / seconds, runs == 0 ? 0 : flow.nanos.sum() / 1e6 / runs, flow.maxNanos.get() / 1e6));
+		}
+		report.append(String.format(Locale.ROOT, "%-10s %6s %8d %8d %7.2f %9.2f%n", "total", "", totalRuns, totalErrors, percent(totalErrors, totalRuns), totalRuns / seconds));
+		report.append(String.format(Locale.ROOT, "HTTP: %d requests, %.1f requests/s%n", requests, requests / seconds));
+		if(rate > 0)
+			report.append("Scheduled flows never started (target rate not reached): ").append(schedule.size()).append(String.format("%n"));
+
+		for(Map.Entry<LoadFlow, FlowStats> pair : stats.entrySet())
+		{
+			int shown = 0;
+			for(Map.Entry<String, LongAdder> error : pair.getValue().errorKinds.entrySet())
+			{
+				if(shown++ == MAX_ERROR_KINDS)
+					break;
+				report.append(String.format("%s: %d x %s%n", pair.getKey().getFlowName(), error.getValue().sum(), error.getKey()));
+			}
+		}
+		System.out.print(report);
+	}
+
+	private static double percent(long part, long total)
+	{
+		return total == 0 ? 0 : 100.0 * part / total;
+	}
+
+	//статистика одного сценария за время измерения
+	private static class FlowStats {
+		final LongAdder runs = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		//первая строка сообщения об ошибке -> количество
+		final Map<String, LongAdder> errorKinds = new ConcurrentHashMap<String, LongAdder>();
+
+		void record(long duration, Throwable error)
+		{
+			runs.increment();
+			nanos.add(duration);
+			maxNanos.accumulate(duration);
+			if(error == null)
+				return;
+			errors.increment();
+			String message = String.valueOf(error.getMessage()).split("\n", 2)[0];
+			if(message.length() > 200)
+				message = message.substring(0, 200) + "...";
+			errorKinds.computeIfAbsent(error.getClass().getSimpleName() + ": " + message, kind -> new LongAdder()).increment();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package restAssuredTwitter;
+
+import static restAssuredTwitter.GPathMatcher.timelineContains;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.HttpStatus;
+
+import io.restassured.response.Response;
+
+/*
+ * Сценарии нагрузочного прогона (см. LoadDriver) - те же цепочки запросов, что проверяют наборы тестов:
+ *   tweet   - POST statuses/update, GET statuses/show, GET statuses/user_timeline (TweetTestSuite);
+ *   retweet - POST statuses/update, POST statuses/retweet/:id со второго аккаунта, POST statuses/unretweet/:id (RetweetTestSuite);
+ *   delete  - POST statuses/update, POST statuses/destroy/:id (TweetDeleteTestSuite).
+ * Шаги выполняются через AsyncTwitterClient: проход сценария - цепочка CompletableFuture, и пока запрос в пути, проход не занимает поток,
+ * поэтому LoadDriver держит в работе сотни проходов на нескольких потоках ввода-вывода.
+ * Проверяются только статусы ответов и наличие твита в ответе: id твита извлекается JsonFields без разбора всего ответа,
+ * а лента запрашивается ровно на месте созданного твита (since_id = id - 1, max_id = id, как TimelineCache.isAbsent) - в ответе
+ * один твит, а не страница из 200, - и проверяется выражением GPath, скомпилированным один раз (GPathMatcher.timelineContains):
+ * REST Assured компилировал бы выражение на каждый запрос, и при нагрузке это упиралось бы в процессор машины, с которой идёт нагрузка.
+ * Твит появляется в ленте не сразу, поэтому её запрос повторяется, пока твит не найдётся (Eventually.awaitAsync).
+ * Созданные твиты записываются в журнал GarbageTweetsHandler и удаляются в конце каждого прохода сценария тем же клиентом;
+ * твит, который удалить не удалось, остаётся в журнале и удаляется перед следующим прогоном.
+ * Если шаг сценария получил неожиданный ответ, проход завершается AssertionError с описанием шага.
+ * */
+
+public enum LoadFlow {
+	TWEET("tweet") {
+		@Override
+		CompletableFuture<Void> run(TwitterAccount author, TwitterAccount other, Set<String> created)
+		{
+			AsyncTwitterClient client = AsyncTwitterClient.of(author);
+			return post(this, client, created).thenCompose(id -> client.show(id).
+					thenCompose(show -> {
+						expect(show, HttpStatus.SC_OK, "show");
+						return Eventually.awaitAsync(() -> client.userTimeline(at(id)).thenAccept(timeline -> {
+							expect(timeline, HttpStatus.SC_OK, "user_timeline");
+							ParsedResponse.of(timeline).body(timelineContains(id));
+						}));
+					}));
+		}
+	},
+	RETWEET("retweet") {
+		@Override
+		CompletableFuture<Void> run(TwitterAccount author, TwitterAccount other, Set<String> created)
+		{
+			AsyncTwitterClient retweeter = AsyncTwitterClient.of(other);
+			return post(this, AsyncTwitterClient.of(author), created).thenCompose(id -> retweeter.retweet(id).
+					thenCompose(retweet -> {
+						expect(retweet, HttpStatus.SC_OK, "retweet");
+						return retweeter.unretweet(id);
+					})).
+					thenAccept(unretweet -> expect(unretweet, HttpStatus.SC_OK, "unretweet"));
+		}
+	},
+	DELETE("delete") {
+		@Override
+		CompletableFuture<Void> run(TwitterAccount author, TwitterAccount other, Set<String> created)
+		{
+			AsyncTwitterClient client = AsyncTwitterClient.of(author);
+			return post(this, client, created).thenCompose(id -> client.destroy(id).thenAccept(destroy -> {
+				//если твит не удалился, его удалит уборка в конце прохода
+				expect(destroy, HttpStatus.SC_OK, "destroy");
+				created.remove(id);
+				GarbageTweetsHandler.journalDeleted(id);
+			}));
+		}
+	};
+
+	private final String flowName;
+
+	private LoadFlow(String flowName)
+	{
+		this.flowName = flowName;
+	}
+
+	//имя сценария в параметре load.mix и в отчёте
+	public String getFlowName()
+	{
+		return flowName;
+	}
+
+	//сценарий по имени или null, если такого нет
+	public static LoadFlow byName(String name)
+	{
+		for(LoadFlow flow : values())
+		{
+			if(flow.flowName.equals(name))
+				return flow;
+		}
+		return null;
+	}
+
+	/*
+	 * Один проход сценария: author создаёт твит, other - второй аккаунт (ретвитит твит author в сценарии retweet).
+	 * Твиты прохода удаляются в конце, ошибка удаления тоже считается ошибкой прохода, но не скрывает ошибку самого сценария.
+	 * Результат завершается, когда закончилась уборка; ошибка прохода - его исключение, завёрнутое в CompletionException.
+	 * */
+	public CompletableFuture<Void> execute(TwitterAccount author, TwitterAccount other)
+	{
+		Set<String> created = ConcurrentHashMap.newKeySet();
+		CompletableFuture<Void> run;
+		try {
+			run = run(author, other, created);
+		} catch(RuntimeException | Error e) {
+			run = AsyncTwitterClient.failed(e);
+		}
+		return run.handle((done, error) -> error).thenCompose(error -> cleanup(author, created).<Void>handle((done, cleanupError) -> {
+			if(error == null && cleanupError == null)
+				return null;
+			Throwable failure = AsyncTwitterClient.unwrap(error != null ? error : cleanupError);
+			if(error != null && cleanupError != null)
+				failure.addSuppressed(AsyncTwitterClient.unwrap(cleanupError));
+			throw new CompletionException(failure);
+		}));
+	}
+
+	//created - твиты, созданные проходом и ещё не удалённые
+	abstract CompletableFuture<Void> run(TwitterAccount author, TwitterAccount other, Set<String> created);
+
+	//POST statuses/update с уникальным текстом, твит записывается в журнал и удаляется в конце прохода
+	static CompletableFuture<String> post(LoadFlow flow, AsyncTwitterClient client, Set<String> created)
+	{
+		return client.update(message(flow)).thenApply(response -> {
+			expect(response, HttpStatus.SC_OK, "update");
+			String id = JsonFields.getString(response, "id_str");
+			GarbageTweetsHandler.journalTweet(id, client.getAccount());
+			created.add(id);
+			return id;
+		});
+	}
+
+	//удаляем оставшиеся твиты прохода; 404 NOT FOUND - твита уже нет
+	static CompletableFuture<Void> cleanup(TwitterAccount author, Set<String> created)
+	{
+		AsyncTwitterClient client = AsyncTwitterClient.of(author);
+		List<CompletableFuture<Void>> deletions = new ArrayList<CompletableFuture<Void>>();
+		for(String id : created)
+		{
+			deletions.add(client.destroy(id).thenAccept(response -> {
+				if(response.statusCode() != HttpStatus.SC_NOT_FOUND)
+					expect(response, HttpStatus.SC_OK, "destroy " + id);
+				GarbageTweetsHandler.journalDeleted(id);
+			}));
+		}
+		return CompletableFuture.allOf(deletions.toArray(new CompletableFuture<?>[0]));
+	}
+
+	//параметры user_timeline, при которых в ленте остаётся только твит id
+	static Map<String, Object> at(String id)
+	{
+		BigInteger value = new BigInteger(id);
+		Map<String, Object> params = new LinkedHashMap<String, Object>();
+		params.put("since_id", value.subtract(BigInteger.ONE).toString());
+		params.put("max_id", value.toString());
+		params.put("count", 1);
+		return params;
+	}
+
+	static String message(LoadFlow flow)
+	{
+		//Twitter не даёт запостить один и тот же текст дважды (см. UniqueMessages)
+		return UniqueMessages.unique("load " + flow.flowName);
+	}
+
+	static void expect(Response response, int status, String step)
+	{
+		if(response.statusCode() != status)
+			throw new AssertionError(step + ": expected " + status + " but was " + response.statusLine() + " " + response.asString());
+	}
+}
@@ -0,0 +1,456 @@
+package restAssuredTwitter;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Хранилище состояния локального заменителя Twitter API (см. LocalTwitterServer).
+ * Здесь живут твиты, ретвиты и загруженные медиа-файлы, а так же проверяются те же правила,
+ * на которые рассчитаны наши тест-кейсы: пустое сообщение (170), слишком длинное сообщение (186),
+ * дубликат (187), несуществующий твит (144), удаление чужого твита (183), повторный ретвит (327),
+ * слишком большой файл (413).
+ * Все методы синхронизированы - сервер обрабатывает запросы в нескольких потоках.
+ * */
+
+public class LocalTweetStore {
+	//максимальная длина твита
+	public static final int MAX_TWEET_LENGTH = 280;
+	//длина твита в режиме совместимости (без tweet_mode=extended), после которой текст сворачивается
+	private static final int COMPAT_TWEET_LENGTH = 140;
+	//ограничение на размер изображения для POST media/upload
+	public static final long MAX_IMAGE_SIZE = 5 * 1024 * 1024;
+
+	//хэштэг: # и слово, в котором есть хотя бы одна буква (хэштэги из одних цифр и знаков не образуются)
+	private static final Pattern HASHTAG = Pattern.compile("(?<![\\p{L}\\p{N}_&#＃])[#＃]([\\p{L}\\p{M}\\p{N}_]*[\\p{L}\\p{M}][\\p{L}\\p{M}\\p{N}_]*)");
+	private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss Z yyyy", Locale.ENGLISH);
+
+	/*
+	 * Ошибка Twitter API: http-статус ответа и код ошибки, который уходит в JSON
+	 * {"errors":[{"code":code,"message":"message"}]}
+	 * */
+	public static class ApiException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		final int httpStatus;
+		final int code;
+
+		ApiException(int httpStatus, int code, String message)
+		{
+			super(message);
+			this.httpStatus = httpStatus;
+			this.code = code;
+		}
+	}
+
+	//тестовый аккаунт, зарегистрированный в заменителе
+	public static final class Account {
+		final long id;
+		final String screenName;
+
+		Account(long id, String screenName)
+		{
+			this.id = id;
+			this.screenName = screenName;
+		}
+	}
+
+	//твит или ретвит (в этом случае retweetOf указывает на первоначальное сообщение)
+	private static final class Tweet {
+		final long id;
+		final Account owner;
+		final String text;
+		final ZonedDateTime createdAt;
+		final Tweet retweetOf;
+		//ретвиты этого твита: автор ретвита -> ретвит
+		final Map<String, Tweet> retweets = new LinkedHashMap<String, Tweet>();
+
+		Tweet(long id, Account owner, String text, Tweet retweetOf)
+		{
+			this.id = id;
+			this.owner = owner;
+			this.text = text;
+			this.createdAt = ZonedDateTime.now(ZoneOffset.UTC);
+			this.retweetOf = retweetOf;
+		}
+	}
+
+	//файл, загружаемый по частям (INIT/APPEND/FINALIZE)
+	private static final class Upload {
+		final Account owner;
+		final long totalBytes;
+		//размеры полученных частей: segment_index -> размер. Повторная отправка той же части её перезаписывает.
+		final Map<Integer, Long> segments = new HashMap<Integer, Long>();
+		boolean finalized;
+
+		Upload(Account owner, long totalBytes)
+		{
+			this.owner = owner;
+			this.totalBytes = totalBytes;
+		}
+	}
+
+	//генератор id: возрастает со временем, как snowflake-идентификаторы Twitter, поэтому since_id/max_id работают как обычно
+	private final AtomicLong ids = new AtomicLong(System.currentTimeMillis() << 22);
+	//токен доступа -> аккаунт
+	private final Map<String, Account> accountsByToken = new HashMap<String, Account>();
+	//все существующие твиты по id
+	private final Map<Long, Tweet> tweets = new HashMap<Long, Tweet>();
+	//ленты аккаунтов: имя -> (id -> твит)
+	private final Map<String, NavigableMap<Long, Tweet>> timelines = new HashMap<String, NavigableMap<Long, Tweet>>();
+	//тексты твитов (не ретвитов) в лентах аккаунтов: имя -> тексты. Дубликат ищется по ним, а не перебором ленты
+	private final Map<String, Set<String>> texts = new HashMap<String, Set<String>>();
+	//файлы, загружаемые по частям: media_id -> файл
+	private final Map<Long, Upload> uploads = new HashMap<Long, Upload>();
+
+	/*
+	 * Регистрируем аккаунт. Токен приложения Twitter имеет вид "user_id-secret", из него и берём id пользователя.
+	 * */
+	public synchronized void addAccount(String screenName, String accessToken)
+	{
+		String userId = accessToken.substring(0, Math.max(accessToken.indexOf('-'), 0));
+		Account account = new Account(userId.isEmpty() ? ids.incrementAndGet() : Long.parseLong(userId), screenName);
+		accountsByToken.put(accessToken, account);
+		timelines.put(screenName, new TreeMap<Long, Tweet>());
+		texts.put(screenName, new HashSet<String>());
+	}
+
+	/*
+	 * Определяем аккаунт по токену из заголовка OAuth. Подпись не проверяем - заменитель нужен для проверки логики тестов,
+	 * а не реализации OAuth. Без авторизации Twitter отвечает 400 BAD REQUEST с ошибкой 215.
+	 * */
+	public synchronized Account authenticate(String accessToken)
+	{
+		Account account = accessToken == null ? null : accountsByToken.get(accessToken);
+		if(account == null)
+			throw new ApiException(400, 215, "Bad Authentication data.");
+		return account;
+	}
+
+	//POST statuses/update
+	public synchronized Map<String, Object> update(Account user, String status)
+	{
+		if(status == null || status.isEmpty())
+			throw new ApiException(403, 170, "Missing required parameter: status.");
+		if(status.codePointCount(0, status.length()) > MAX_TWEET_LENGTH)
+			throw new ApiException(403, 186, "Tweet needs to be a bit shorter.");
+		if(texts.get(user.screenName).contains(status))
+			throw new ApiException(403, 187, "Status is a duplicate.");
+
+		Tweet tweet = new Tweet(ids.incrementAndGet(), user, status, null);
+		store(tweet);
+		return toJson(tweet, user, false);
+	}
+
+	//GET statuses/show
+	public synchronized Map<String, Object> show(Account user, String id, boolean extended)
+	{
+		if(id == null)
+			throw new ApiException(400, 38, "id parameter is missing.");
+		return toJson(find(id), user, extended);
+	}
+
+	/*
+	 * GET statuses/lookup: твиты по списку id через запятую, не больше 100.
+	 * С map=true ответ - {"id": {"<id>": твит или null}} со всеми запрошенными id, иначе - массив только найденных твитов.
+	 * */
+	public synchronized Object lookup(Account user, String ids, boolean map, boolean extended)
+	{
+		if(ids == null || ids.isEmpty())
+			throw new ApiException(400, 38, "id parameter is missing.");
+		String[] requested = ids.split(",");
+		if(requested.length > 100)
+			throw new ApiException(403, 18, "Too many terms specified in query.");
+
+		Map<String, Object> byId = new LinkedHashMap<String, Object>();
+		List<Map<String, Object>> found = new ArrayList<Map<String, Object>>();
+		for(String id : requested)
+		{
+			Tweet tweet = null;
+			try {
+				tweet = tweets.get(Long.parseLong(id.trim()));
+			} catch(NumberFormatException e) {
+				//некорректный id - такого твита точно нет
+			}
+			Map<String, Object> json = tweet == null ? null : toJson(tweet, user, extended);
+			byId.put(id.trim(), json);
+			if(json != null)
+				found.add(json);
+		}
+		return map ? Collections.<String, Object>singletonMap("id", byId) : found;
+	}
+
+	//POST statuses/destroy/:id. Вместе с твитом удаляются и все его ретвиты.
+	public synchronized Map<String, Object> destroy(Account user, String id)
+	{
+		Tweet tweet = find(id);
+		if(tweet.owner != user)
+			throw new ApiException(403, 183, "You may not delete another user's status.");
+
+		Map<String, Object> json = toJson(tweet, user, false);
+		remove(tweet);
+		for(Tweet retweet : new ArrayList<Tweet>(tweet.retweets.values()))
+			remove(retweet);
+		return json;
+	}
+
+	//POST statuses/retweet/:id
+	public synchronized Map<String, Object> retweet(Account user, String id)
+	{
+		Tweet tweet = find(id);
+		Tweet original = tweet.retweetOf != null ? tweet.retweetOf : tweet;
+		if(original.retweets.containsKey(user.screenName))
+			throw new ApiException(403, 327, "You have already retweeted this Tweet.");
+
+		Tweet retweet = new Tweet(ids.incrementAndGet(), user, "RT @" + original.owner.screenName + ": " + original.text, original);
+		store(retweet);
+		return toJson(retweet, user, false);
+	}
+
+	//POST statuses/unretweet/:id. Как и Twitter, принимаем id как первоначального твита, так и ретвита. В ответе - первоначальный твит.
+	public synchronized Map<String, Object> unretweet(Account user, String id)
+	{
+		Tweet tweet = find(id);
+		Tweet original = tweet.retweetOf != null ? tweet.retweetOf : tweet;
+		Tweet retweet = original.retweets.get(user.screenName);
+		if(retweet != null)
+			remove(retweet);
+		return toJson(original, user, false);
+	}
+
+	/*
+	 * GET statuses/user_timeline. Твиты отдаются от новых к старым, не более count штук (по умолчанию 20, максимум 200),
+	 * с учётом since_id (строго новее) и max_id (не новее).
+	 * */
+	public synchronized List<Map<String, Object>> userTimeline(Account user, String screenName, int count, Long sinceId, Long maxId, boolean extended, boolean includeRts)
+	{
+		NavigableMap<Long, Tweet> timeline = timelines.get(screenName == null ? user.screenName : screenName);
+		if(timeline == null)
+			throw new ApiException(404, 34, "Sorry, that page does not exist.");
+
+		NavigableMap<Long, Tweet> page = timeline;
+		if(maxId != null)
+			page = page.headMap(maxId, true);
+		if(sinceId != null)
+			page = page.tailMap(sinceId, false);
+
+		List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+		int limit = Math.max(1, Math.min(count, 200));
+		for(Tweet tweet : page.descendingMap().values())
+		{
+			if(result.size() == limit)
+				break;
+			if(includeRts || tweet.retweetOf == null)
+				result.add(toJson(tweet, user, extended));
+		}
+		return result;
+	}
+
+	//POST media/upload: проверяем размер файла и выдаём media_id
+	public synchronized Map<String, Object> uploadMedia(Account user, long size)
+	{
+		if(size > MAX_IMAGE_SIZE)
+			throw new ApiException(413, 324, "File size exceeds " + MAX_IMAGE_SIZE + " bytes.");
+
+		return mediaJson(ids.incrementAndGet(), size);
+	}
+
+	//POST media/upload command=INIT: объявляем размер файла и получаем media_id для следующих частей
+	public synchronized Map<String, Object> initUpload(Account user, Long totalBytes, String mediaType)
+	{
+		if(totalBytes == null || mediaType == null)
+			throw new ApiException(400, 38, "total_bytes and media_type parameters are required.");
+		if(mediaType.startsWith("image/") && totalBytes > MAX_IMAGE_SIZE)
+			throw new ApiException(413, 324, "File size exceeds " + MAX_IMAGE_SIZE + " bytes.");
+
+		long mediaId = ids.incrementAndGet();
+		uploads.put(mediaId, new Upload(user, totalBytes));
+		return mediaJson(mediaId, null);
+	}
+
+	//POST media/upload command=APPEND: очередная часть файла
+	public synchronized void appendUpload(Account user, String mediaId, int segmentIndex, long size)
+	{
+		Upload upload = findUpload(user, mediaId);
+		if(upload.finalized)
+			throw new ApiException(400, 324, "Upload is already finalized.");
+		if(segmentIndex < 0 || segmentIndex > 999)
+			throw new ApiException(400, 324, "segment_index must be between 0 and 999.");
+		upload.segments.put(segmentIndex, size);
+		long received = 0;
+		for(long segment : upload.segments.values())
+			received += segment;
+		if(received > upload.totalBytes)
+			throw new ApiException(400, 324, "Segments exceed the declared total_bytes.");
+	}
+
+	//POST media/upload command=FINALIZE: сумма частей должна совпасть с объявленным размером
+	public synchronized Map<String, Object> finalizeUpload(Account user, String mediaId)
+	{
+		Upload upload = findUpload(user, mediaId);
+		long received = 0;
+		for(long segment : upload.segments.values())
+			received += segment;
+		if(received != upload.totalBytes)
+			throw new ApiException(400, 324, "Segments do not add up to provided total file size.");
+		upload.finalized = true;
+		return mediaJson(Long.parseLong(mediaId), upload.totalBytes);
+	}
+
+	//GET media/upload command=STATUS: изображения обрабатываются сразу, поэтому состояние всегда succeeded
+	public synchronized Map<String, Object> uploadStatus(Account user, String mediaId)
+	{
+		Upload upload = findUpload(user, mediaId);
+		if(!upload.finalized)
+			throw new ApiException(400, 324, "Upload is not finalized.");
+		Map<String, Object> processingInfo = new LinkedHashMap<String, Object>();
+		processingInfo.put("state", "succeeded");
+		processingInfo.put("progress_percent", 100);
+		Map<String, Object> json = mediaJson(Long.parseLong(mediaId), upload.totalBytes);
+		json.put("processing_info", processingInfo);
+		return json;
+	}
+
+	private Upload findUpload(Account user, String mediaId)
+	{
+		Upload upload = null;
+		try {
+			upload = uploads.get(Long.parseLong(mediaId));
+		} catch(NumberFormatException e) {
+			//некорректный media_id - такой загрузки точно нет
+		}
+		if(upload == null || upload.owner != user)
+			throw new ApiException(400, 324, "Invalid media_id.");
+		return upload;
+	}
+
+	private static Map<String, Object> mediaJson(long mediaId, Long size)
+	{
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		json.put("media_id", mediaId);
+		json.put("media_id_string", String.valueOf(mediaId));
+		if(size != null)
+			json.put("size", size);
+		json.put("expires_after_secs", 86400);
+		return json;
+	}
+
+	private Tweet find(String id)
+	{
+		Tweet tweet = null;
+		try {
+			tweet = tweets.get(Long.parseLong(id));
+		} catch(NumberFormatException e) {
+			//некорректный id - такого твита точно нет
+		}
+		if(tweet == null)
+			throw new ApiException(404, 144, "No status found with that ID.");
+		return tweet;
+	}
+
+	private void store(Tweet tweet)
+	{
+		tweets.put(tweet.id, tweet);
+		timelines.get(tweet.owner.screenName).put(tweet.id, tweet);
+		if(tweet.retweetOf != null)
+			tweet.retweetOf.retweets.put(tweet.owner.screenName, tweet);
+		else
+			texts.get(tweet.owner.screenName).add(tweet.text);
+	}
+
+	private void remove(Tweet tweet)
+	{
+		tweets.remove(tweet.id);
+		timelines.get(tweet.owner.screenName).remove(tweet.id);
+		if(tweet.retweetOf != null)
+			tweet.retweetOf.retweets.remove(tweet.owner.screenName);
+		else
+			texts.get(tweet.owner.screenName).remove(tweet.text);
+	}
+
+	/*
+	 * JSON твита в том виде, в каком его отдаёт Twitter. retweet_count и retweeted всегда относятся к первоначальному сообщению,
+	 * retweeted - с точки зрения пользователя, выполняющего запрос.
+	 * */
+	private Map<String, Object> toJson(Tweet tweet, Account viewer, boolean extended)
+	{
+		Tweet original = tweet.retweetOf != null ? tweet.retweetOf : tweet;
+		int length = tweet.text.codePointCount(0, tweet.text.length());
+
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		json.put("created_at", CREATED_AT.format(tweet.createdAt));
+		json.put("id", tweet.id);
+		json.put("id_str", String.valueOf(tweet.id));
+		if(extended)
+		{
+			json.put("full_text", tweet.text);
+			json.put("truncated", false);
+			json.put("display_text_range", new int[] {0, length});
+		}
+		else if(length > COMPAT_TWEET_LENGTH)
+		{
+			json.put("text", tweet.text.substring(0, tweet.text.offsetByCodePoints(0, COMPAT_TWEET_LENGTH - 1)) + "…");
+			json.put("truncated", true);
+		}
+		else
+		{
+			json.put("text", tweet.text);
+			json.put("truncated", false);
+		}
+		json.put("entities", entities(tweet.text));
+		json.put("user", userJson(tweet.owner));
+		if(tweet.retweetOf != null)
+			json.put("retweeted_status", toJson(tweet.retweetOf, viewer, extended));
+		json.put("retweet_count", original.retweets.size());
+		json.put("favorite_count", 0);
+		json.put("favorited", false);
+		json.put("retweeted", original.retweets.containsKey(viewer.screenName));
+		json.put("lang", "und");
+		return json;
+	}
+
+	//entities.hashtags: текст хэштэга без # и его положение [first, last] в символах (code points) сообщения
+	private static Map<String, Object> entities(String text)
+	{
+		List<Map<String, Object>> hashtags = new ArrayList<Map<String, Object>>();
+		Matcher matcher = HASHTAG.matcher(text);
+		while(matcher.find())
+		{
+			Map<String, Object> hashtag = new LinkedHashMap<String, Object>();
+			hashtag.put("text", matcher.group(1));
+			hashtag.put("indices", new int[] {text.codePointCount(0, matcher.start()), text.codePointCount(0, matcher.end())});
+			hashtags.add(hashtag);
+		}
+
+		Map<String, Object> entities = new LinkedHashMap<String, Object>();
+		entities.put("hashtags", hashtags);
+		entities.put("symbols", new ArrayList<Object>());
+		entities.put("user_mentions", new ArrayList<Object>());
+		entities.put("urls", new ArrayList<Object>());
+		return entities;
+	}
+
+	private static Map<String, Object> userJson(Account account)
+	{
+		Map<String, Object> user = new LinkedHashMap<String, Object>();
+		user.put("id", account.id);
+		user.put("id_str", String.valueOf(account.id));
+		user.put("name", account.screenName);
+		user.put("screen_name", account.screenName);
+		return user;
+	}
+}
@@ -0,0 +1,407 @@
+package restAssuredTwitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import groovy.json.JsonOutput;
+import restAssuredTwitter.LocalTweetStore.Account;
+import restAssuredTwitter.LocalTweetStore.ApiException;
+
+/*
+ * Локальный заменитель Twitter API v1.1, который поднимается прямо в JVM с тестами на loopback-интерфейсе.
+ * Реализует те запросы, которыми пользуются наши наборы тестов:
+ * POST statuses/update, GET statuses/show, GET statuses/lookup, POST statuses/destroy/:id, POST statuses/retweet/:id,
+ * POST statuses/unretweet/:id, GET statuses/user_timeline и POST media/upload
+ * (простая загрузка через media_data/media и загрузка по частям INIT/APPEND/FINALIZE/STATUS).
+ * Состояние (твиты, ретвиты, ленты) хранится в LocalTweetStore.
+ * Как и Twitter, сервер ограничивает число запросов каждого пользователя к каждому запросу API в окне фиксированной длины
+ * и сообщает остаток в заголовках x-rate-limit-limit/x-rate-limit-remaining/x-rate-limit-reset (см. setRateLimit).
+ * Какой API использовать - настоящий или локальный - решает TwitterEndpoints.
+ * */
+
+public class LocalTwitterServer {
+	private static final Pattern OAUTH_TOKEN = Pattern.compile("oauth_token=\"([^\"]*)\"");
+	private static final Pattern CHARSET = Pattern.compile("charset=([^;\\s]+)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^;\"]+)\"?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern PART_NAME = Pattern.compile("(?<![a-z])name=\"([^\"]*)\"", Pattern.CASE_INSENSITIVE);
+	private static final Pattern DESTROY = Pattern.compile("/1\\.1/statuses/destroy/([^/]+)\\.json");
+	private static final Pattern RETWEET = Pattern.compile("/1\\.1/statuses/retweet/([^/]+)\\.json");
+	private static final Pattern UNRETWEET = Pattern.compile("/1\\.1/statuses/unretweet/([^/]+)\\.json");
+	//id в пути запроса: /1.1/statuses/destroy/123.json -> /1.1/statuses/destroy/:id.json
+	private static final Pattern PATH_ID = Pattern.compile("/(destroy|retweet|unretweet)/[^/]+\\.json$");
+
+	private final LocalTweetStore store;
+	//пользователь и запрос API -> окно ограничения числа запросов
+	private final Map<String, RateWindow> rateWindows = new ConcurrentHashMap<String, RateWindow>();
+	private volatile int rateLimit = 100000;
+	private volatile long rateWindowMillis = TimeUnit.MINUTES.toMillis(15);
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public LocalTwitterServer(LocalTweetStore store)
+	{
+		this.store = store;
+	}
+
+	//ограничение: не больше limit запросов одного пользователя к одному запросу API за windowMillis (по умолчанию 100000 за 15 минут)
+	public void setRateLimit(int limit, long windowMillis)
+	{
+		rateLimit = limit;
+		rateWindowMillis = windowMillis;
+	}
+
+	//запускаем сервер на свободном порту loopback-интерфейса
+	public void start() throws IOException
+	{
+		start(0);
+	}
+
+	//запускаем сервер на порту port loopback-интерфейса (0 - любой свободный порт)
+	public synchronized void start(int port) throws IOException
+	{
+		/*
+		 * Без TCP_NODELAY ответ на loopback ждёт алгоритма Нейгла и отложенного ACK, и каждый запрос стоит десятки миллисекунд.
+		 * JDK HttpServer включает его только системным свойством, которое читается при первом создании сервера; заданное явно не трогаем.
+		 * */
+		if(System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/", this::handle);
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "local-twitter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public synchronized void stop()
+	{
+		if(server != null)
+		{
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	//адрес сервера вида http://127.0.0.1:port, подставляется вместо https://api.twitter.com и https://upload.twitter.com
+	public String getBaseUri()
+	{
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		int status = 200;
+		Object body;
+		try {
+			body = route(exchange);
+		} catch(ApiException e) {
+			status = e.httpStatus;
+			body = error(e.code, e.getMessage());
+		} catch(RuntimeException e) {
+			status = 500;
+			body = error(131, "Internal error.");
+		}
+
+		//пустой ответ (например, на APPEND) - 204 NO CONTENT
+		if(body == null)
+		{
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+			return;
+		}
+
+		byte[] bytes = JsonOutput.toJson(body).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+	//разбираем путь и вызываем соответствующий метод хранилища
+	private Object route(HttpExchange exchange) throws IOException
+	{
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		Map<String, Long> files = new HashMap<String, Long>();
+		Map<String, String> params = params(exchange, files);
+		Account user = store.authenticate(accessToken(exchange.getRequestHeaders().getFirst("Authorization")));
+		checkRateLimit(exchange, user, method, path);
+		Matcher matcher;
+
+		if(method.equals("POST") && path.equals("/1.1/statuses/update.json"))
+			return store.update(user, params.get("status"));
+		if(method.equals("GET") && path.equals("/1.1/statuses/show.json"))
+			return store.show(user, params.get("id"), isExtended(params));
+		if((method.equals("GET") || method.equals("POST")) && path.equals("/1.1/statuses/lookup.json"))
+			return store.lookup(user, params.get("id"), "true".equals(params.get("map")), isExtended(params));
+		if(method.equals("GET") && path.equals("/1.1/statuses/user_timeline.json"))
+		{
+			return store.userTimeline(user, params.get("screen_name"), intParam(params, "count", 20), longParam(params, "since_id"),
+					longParam(params, "max_id"), isExtended(params), !"false".equals(params.get("include_rts")));
+		}
+		if(method.equals("POST") && (matcher = DESTROY.matcher(path)).matches())
+			return store.destroy(user, matcher.group(1));
+		if(method.equals("POST") && (matcher = RETWEET.matcher(path)).matches())
+			return store.retweet(user, matcher.group(1));
+		if(method.equals("POST") && (matcher = UNRETWEET.matcher(path)).matches())
+			return store.unretweet(user, matcher.group(1));
+		if(path.equals("/1.1/media/upload.json"))
+			return media(method, user, params, files);
+
+		throw new ApiException(404, 34, "Sorry, that page does not exist.");
+	}
+
+	/*
+	 * Учитываем запрос в окне пользователя и добавляем заголовки x-rate-limit-*.
+	 * Если запросов в окне больше, чем разрешено, - 429 TOO MANY REQUESTS с ошибкой 88, как у Twitter.
+	 * */
+	private void checkRateLimit(HttpExchange exchange, Account user, String method, String path)
+	{
+		String endpoint = method + " " + PATH_ID.matcher(path).replaceFirst("/$1/:id.json");
+		RateWindow window = rateWindows.computeIfAbsent(user.screenName + " " + endpoint, key -> new RateWindow());
+		long remaining = window.consume(rateLimit, rateWindowMillis);
+		exchange.getResponseHeaders().set("x-rate-limit-limit", String.valueOf(rateLimit));
+		exchange.getResponseHeaders().set("x-rate-limit-remaining", String.valueOf(Math.max(remaining, 0)));
+		exchange.getResponseHeaders().set("x-rate-limit-reset", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(window.resetAt)));
+		if(remaining < 0)
+			throw new ApiException(429, 88, "Rate limit exceeded");
+	}
+
+	/*
+	 * POST media/upload: без параметра command - простая загрузка файла целиком (media_data в base64 или файл media),
+	 * с command=INIT/APPEND/FINALIZE - загрузка по частям, GET с command=STATUS - состояние обработки файла.
+	 * */
+	private Object media(String method, Account user, Map<String, String> params, Map<String, Long> files)
+	{
+		String command = params.get("command");
+		if(method.equals("GET") && "STATUS".equals(command))
+			return store.uploadStatus(user, params.get("media_id"));
+		if(!method.equals("POST"))
+			throw new ApiException(404, 34, "Sorry, that page does not exist.");
+		if(command == null)
+			return store.uploadMedia(user, files.containsKey("media") ? files.get("media") : base64Size(params.get("media_data")));
+		if(command.equals("INIT"))
+			return store.initUpload(user, longParam(params, "total_bytes"), params.get("media_type"));
+		if(command.equals("APPEND"))
+		{
+			long size = files.containsKey("media") ? files.get("media") : base64Size(params.get("media_data"));
+			store.appendUpload(user, params.get("media_id"), intParam(params, "segment_index", -1), size);
+			return null;
+		}
+		if(command.equals("FINALIZE"))
+			return store.finalizeUpload(user, params.get("media_id"));
+		throw new ApiException(400, 38, "command parameter is invalid.");
+	}
+
+	/*
+	 * параметры запроса: из строки запроса и, для POST с формой, из тела запроса
+	 * для multipart/form-data текстовые части тоже становятся параметрами, а от файлов нам нужен только размер (files)
+	 * */
+	private static Map<String, String> params(HttpExchange exchange, Map<String, Long> files) throws IOException
+	{
+		Map<String, String> params = new HashMap<String, String>();
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		String charset = "UTF-8";
+		if(contentType != null)
+		{
+			Matcher matcher = CHARSET.matcher(contentType);
+			if(matcher.find())
+				charset = matcher.group(1).replace("\"", "");
+		}
+
+		decodeForm(exchange.getRequestURI().getRawQuery(), "UTF-8", params);
+		if(contentType != null && contentType.startsWith("application/x-www-form-urlencoded"))
+			decodeForm(new String(readAll(exchange.getRequestBody()), StandardCharsets.ISO_8859_1), charset, params);
+		else if(contentType != null && contentType.startsWith("multipart/form-data"))
+		{
+			Matcher matcher = BOUNDARY.matcher(contentType);
+			if(!matcher.find())
+				throw new ApiException(400, 38, "multipart boundary is missing.");
+			decodeMultipart(readAll(exchange.getRequestBody()), matcher.group(1), params, files);
+		}
+		else
+			readAll(exchange.getRequestBody());
+		return params;
+	}
+
+	//некорректная %-последовательность или неизвестная кодировка - ошибка клиента, 400, а не 500
+	private static void decodeForm(String form, String charset, Map<String, String> params)
+	{
+		if(form == null || form.isEmpty())
+			return;
+		try {
+			for(String pair : form.split("&"))
+			{
+				int eq = pair.indexOf('=');
+				String name = eq < 0 ? pair : pair.substring(0, eq);
+				String value = eq < 0 ? "" : pair.substring(eq + 1);
+				params.put(URLDecoder.decode(name, charset), URLDecoder.decode(value, charset));
+			}
+		} catch(UnsupportedEncodingException | IllegalArgumentException e) {
+			throw new ApiException(400, 38, "request parameters are malformed.");
+		}
+	}
+
+	/*
+	 * разбираем тело multipart/form-data: части разделены строкой --boundary, заголовки части отделены пустой строкой
+	 * часть без пустой строки после заголовков - ошибка клиента, 400
+	 * */
+	private static void decodeMultipart(byte[] body, String boundary, Map<String, String> params, Map<String, Long> files)
+	{
+		byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+		int start = indexOf(body, delimiter, 0);
+		while(start >= 0)
+		{
+			int partStart = start + delimiter.length;
+			//"--boundary--" - конец тела
+			if(partStart + 1 < body.length && body[partStart] == '-' && body[partStart + 1] == '-')
+				break;
+			partStart += 2;
+			int next = indexOf(body, delimiter, partStart);
+			if(next < 0)
+				break;
+
+			int headersEnd = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), partStart);
+			if(headersEnd < 0 || headersEnd + 4 > next - 2)
+				throw new ApiException(400, 38, "multipart body is malformed.");
+			String headers = new String(body, partStart, headersEnd - partStart, StandardCharsets.ISO_8859_1);
+			int contentStart = headersEnd + 4;
+			int contentEnd = next - 2;
+			Matcher name = PART_NAME.matcher(headers);
+			if(name.find())
+			{
+				if(headers.toLowerCase().contains("filename="))
+					files.put(name.group(1), (long) (contentEnd - contentStart));
+				else
+					params.put(name.group(1), new String(body, contentStart, contentEnd - contentStart, StandardCharsets.UTF_8));
+			}
+			start = next;
+		}
+	}
+
+	private static int indexOf(byte[] data, byte[] pattern, int from)
+	{
+		outer:
+		for(int i = from; i <= data.length - pattern.length; i++)
+		{
+			for(int j = 0; j < pattern.length; j++)
+			{
+				if(data[i + j] != pattern[j])
+					continue outer;
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while((read = is.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+		return out.toByteArray();
+	}
+
+	//oauth_token из заголовка "Authorization: OAuth ..."
+	private static String accessToken(String authorization) throws UnsupportedEncodingException
+	{
+		if(authorization == null || !authorization.startsWith("OAuth "))
+			return null;
+		Matcher matcher = OAUTH_TOKEN.matcher(authorization);
+		return matcher.find() ? URLDecoder.decode(matcher.group(1), "UTF-8") : null;
+	}
+
+	//размер файла, переданного в media_data в base64, считаем без декодирования
+	private static long base64Size(String data)
+	{
+		if(data == null || data.isEmpty())
+			throw new ApiException(400, 38, "media parameter is missing.");
+		String trimmed = data.trim();
+		int padding = trimmed.endsWith("==") ? 2 : trimmed.endsWith("=") ? 1 : 0;
+		return trimmed.length() / 4L * 3 - padding;
+	}
+
+	private static boolean isExtended(Map<String, String> params)
+	{
+		return "extended".equals(params.get("tweet_mode"));
+	}
+
+	//нечисловое значение числового параметра - 400, как у Twitter
+	private static int intParam(Map<String, String> params, String name, int defaultValue)
+	{
+		String value = params.get(name);
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value.trim());
+		} catch(NumberFormatException e) {
+			throw new ApiException(400, 38, name + " parameter is invalid.");
+		}
+	}
+
+	private static Long longParam(Map<String, String> params, String name)
+	{
+		String value = params.get(name);
+		try {
+			return value == null ? null : Long.valueOf(value.trim());
+		} catch(NumberFormatException e) {
+			throw new ApiException(400, 38, name + " parameter is invalid.");
+		}
+	}
+
+	private static Map<String, Object> error(int code, String message)
+	{
+		Map<String, Object> error = new LinkedHashMap<String, Object>();
+		error.put("code", code);
+		error.put("message", message);
+		List<Map<String, Object>> errors = Collections.singletonList(error);
+		return Collections.<String, Object>singletonMap("errors", errors);
+	}
+
+	//окно ограничения числа запросов одного пользователя к одному запросу API
+	private static class RateWindow {
+		//конец окна, в миллисекундах; округлён до секунды, как заголовок x-rate-limit-reset
+		long resetAt;
+		int used;
+
+		//учитываем запрос, возвращаем, сколько запросов осталось в окне (меньше нуля - лимит превышен)
+		synchronized long consume(int limit, long windowMillis)
+		{
+			long now = System.currentTimeMillis();
+			if(now >= resetAt)
+			{
+				resetAt = (now + windowMillis + 999) / 1000 * 1000;
+				used = 0;
+			}
+			used++;
+			return (long) limit - used;
+		}
+	}
+}
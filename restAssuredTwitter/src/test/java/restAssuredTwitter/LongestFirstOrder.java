@@ -0,0 +1,84 @@
+package restAssuredTwitter;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.Optional;
+
+import org.junit.jupiter.api.ClassDescriptor;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.ClassOrdererContext;
+import org.junit.jupiter.api.MethodDescriptor;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.MethodOrdererContext;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.platform.commons.annotation.Testable;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
+import org.junit.platform.commons.support.ReflectionSupport;
+
+/*
+ * Порядок наборов и тест-кейсов "сначала самые долгие" по истории длительности (см. TestDurations).
+ * При параллельном прогоне время всего прогона определяет последний закончившийся поток: если самый долгий тест-кейс
+ * (загрузка картинок, цепочка ретвитов) достанется потоку последним, остальные потоки простаивают, пока он идёт.
+ * Если раздавать работу от долгой к короткой, короткие тест-кейсы в конце заполняют простой, и прогон короче.
+ * Наборы сортируются по сумме длительности их тест-кейсов, тест-кейсы внутри набора - по своей длительности.
+ * Тест-кейсы без истории (новые или ни разу не прошедшие) считаются самыми долгими: лучше начать неизвестное пораньше.
+ * Подключается в pom.xml параметрами junit.jupiter.testclass.order.default и junit.jupiter.testmethod.order.default.
+ * Без параллельного выполнения (junit.jupiter.execution.parallel.enabled=false) порядок не меняется: время всего прогона
+ * от него не зависит, а запись и воспроизведение кассеты (Cassette) рассчитаны на одинаковый порядок запросов.
+ * */
+
+public class LongestFirstOrder implements ClassOrderer, MethodOrderer {
+	private static final String PARALLEL_ENABLED = "junit.jupiter.execution.parallel.enabled";
+
+	@Override
+	public void orderClasses(ClassOrdererContext context)
+	{
+		if(isParallel(context.getConfigurationParameter(PARALLEL_ENABLED)))
+			context.getClassDescriptors().sort(Comparator.comparingLong((ClassDescriptor suite) -> expected(suite.getTestClass())).reversed());
+	}
+
+	@Override
+	public void orderMethods(MethodOrdererContext context)
+	{
+		if(isParallel(context.getConfigurationParameter(PARALLEL_ENABLED)))
+		{
+			Class<?> suite = context.getTestClass();
+			context.getMethodDescriptors().sort(Comparator.comparingLong((MethodDescriptor test) -> expected(suite, test.getMethod())).reversed());
+		}
+	}
+
+	//MethodOrderer по умолчанию выполняет тест-кейсы набора в одном потоке, а нам нужен режим из junit.jupiter.execution.parallel.mode.default
+	@Override
+	public Optional<ExecutionMode> getDefaultExecutionMode()
+	{
+		return Optional.empty();
+	}
+
+	private static boolean isParallel(Optional<String> enabled)
+	{
+		return enabled.map(Boolean::parseBoolean).orElse(false);
+	}
+
+	//ожидаемая длительность тест-кейса, Long.MAX_VALUE - истории нет
+	private static long expected(Class<?> suite, Method method)
+	{
+		Long millis = TestDurations.expected(TestDurations.key(suite.getName(), method.getName()));
+		return millis == null ? Long.MAX_VALUE : millis;
+	}
+
+	//ожидаемая длительность набора - сумма его тест-кейсов
+	private static long expected(Class<?> suite)
+	{
+		long total = 0;
+		//@Test, @ParameterizedTest, @RepeatedTest и т.п. помечены @Testable
+		for(Method method : ReflectionSupport.findMethods(suite, test -> AnnotationSupport.isAnnotated(test, Testable.class), HierarchyTraversalMode.TOP_DOWN))
+		{
+			long millis = expected(suite, method);
+			if(millis == Long.MAX_VALUE)
+				return Long.MAX_VALUE;
+			total += millis;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,64 @@
+package restAssuredTwitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Счётчик разобранного JSON: сколько раз и сколько символов тел ответов было разобрано в каждом тест-кейсе.
+ * Учитываются разборы через ParsedResponse (один раз на ответ) и JsonFields (один проход на каждый вызов read).
+ * Проверки REST Assured then().body(...) и response.jsonPath() сюда не попадают, поэтому ответы,
+ * которые проверяются несколько раз, стоит оборачивать в ParsedResponse - тогда счётчик показывает реальную работу.
+ * Тест-кейс выполняется в одном потоке, поэтому текущий тест-кейс хранится в ThreadLocal (см. ParseStatsListener).
+ * */
+
+public class ParseStats {
+	//всего за прогон
+	private static final LongAdder totalParses = new LongAdder();
+	private static final LongAdder totalChars = new LongAdder();
+	//счётчики тест-кейса, который выполняется в этом потоке: {разборов, символов}
+	private static final ThreadLocal<long[]> current = new ThreadLocal<long[]>();
+	//тест-кейс -> {разборов, символов}
+	private static final Map<String, long[]> perTest = new ConcurrentHashMap<String, long[]>();
+
+	//разобрано тело ответа длиной chars символов
+	public static void parsed(int chars)
+	{
+		totalParses.increment();
+		totalChars.add(chars);
+		long[] counters = current.get();
+		if(counters != null)
+		{
+			counters[0]++;
+			counters[1] += chars;
+		}
+	}
+
+	//в этом потоке начался тест-кейс
+	public static void testStarted()
+	{
+		current.set(new long[2]);
+	}
+
+	//тест-кейс name в этом потоке закончился
+	public static void testFinished(String name)
+	{
+		long[] counters = current.get();
+		current.remove();
+		if(counters != null)
+			perTest.put(name, counters);
+	}
+
+	//итог прогона и тест-кейсы, отсортированные по количеству разобранных символов
+	public static String report()
+	{
+		StringBuilder report = new StringBuilder(String.format("JSON parsed: %d times, %d chars", totalParses.sum(), totalChars.sum()));
+		List<Map.Entry<String, long[]>> tests = new ArrayList<Map.Entry<String, long[]>>(perTest.entrySet());
+		tests.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+		for(Map.Entry<String, long[]> pair : tests)
+			report.append(String.format("%n  %-48s %5d times %9d chars", pair.getKey(), pair.getValue()[0], pair.getValue()[1]));
+		return report.toString();
+	}
+}
@@ -0,0 +1,45 @@
+package restAssuredTwitter;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+/*
+ * Слушатель JUnit Platform, который подключается через META-INF/services/org.junit.platform.launcher.TestExecutionListener.
+ * Отмечает начало и конец каждого тест-кейса для счётчика разобранного JSON и после всех тестов выводит отчёт (см. ParseStats).
+ * JUnit вызывает executionStarted/executionFinished в том же потоке, в котором выполняется тест-кейс.
+ * */
+
+public class ParseStatsListener implements TestExecutionListener {
+	private TestPlan testPlan;
+
+	@Override
+	public void testPlanExecutionStarted(TestPlan testPlan)
+	{
+		this.testPlan = testPlan;
+	}
+
+	@Override
+	public void executionStarted(TestIdentifier testIdentifier)
+	{
+		if(testIdentifier.isTest())
+			ParseStats.testStarted();
+	}
+
+	@Override
+	public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult)
+	{
+		if(!testIdentifier.isTest())
+			return;
+		//имя тест-кейса вместе с набором тестов: TweetTestSuite.testCase04()
+		String suite = testPlan.getParent(testIdentifier).map(TestIdentifier::getDisplayName).orElse("");
+		ParseStats.testFinished(suite + "." + testIdentifier.getDisplayName());
+	}
+
+	@Override
+	public void testPlanExecutionFinished(TestPlan testPlan)
+	{
+		System.out.println(ParseStats.report());
+	}
+}
@@ -0,0 +1,150 @@
+package restAssuredTwitter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.hamcrest.Matcher;
+
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+
+/*
+ * Ответ, тело которого разбирается один раз на все проверки.
+ * response.jsonPath() при каждом вызове создаёт новый JsonPath и заново разбирает тело,
+ * response.then().body(...) тоже разбирает его на каждую проверку. Здесь тело разбирается при первом обращении
+ * и дальше все get/body и вложенные root(...) берут значения из уже разобранного дерева.
+ * Выражения те же, что и в REST Assured (GPath), но каждое компилируется один раз на JVM (см. GPath):
+ *   ParsedResponse retweet = ParsedResponse.of(response);
+ *   retweet.root("retweeted_status").
+ *           body("id_str", equalTo(id)).
+ *           body("retweet_count", equalTo(retweet_count + 1));
+ * Параметризованные проверки (GPathMatcher) передаются в body(matcher): ParsedResponse.of(response).body(timelineContains(id)).
+ * Каждый разбор учитывается в ParseStats.
+ * */
+
+public class ParsedResponse {
+	private final Response response;
+	//общий для ответа и всех его root(...)
+	private final Parsed parsed;
+	//префикс выражений, "" - корень ответа
+	private final String root;
+
+	private ParsedResponse(Response response, Parsed parsed, String root)
+	{
+		this.response = response;
+		this.parsed = parsed;
+		this.root = root;
+	}
+
+	public static ParsedResponse of(Response response)
+	{
+		return new ParsedResponse(response, new Parsed(response), "");
+	}
+
+	public Response getResponse()
+	{
+		return response;
+	}
+
+	//тело ответа, читается из Response один раз
+	public String asString()
+	{
+		return parsed.body();
+	}
+
+	//разобранное тело ответа (Map/List) или его часть под root(...)
+	public Object json()
+	{
+		return get("");
+	}
+
+	//JsonPath по телу ответа, для методов JsonPath, которых здесь нет; тело для него разбирается отдельно, один раз
+	public JsonPath jsonPath()
+	{
+		return parsed.jsonPath();
+	}
+
+	//выражения дальше считаются от path, как root(...) в REST Assured
+	public ParsedResponse root(String path)
+	{
+		return new ParsedResponse(response, parsed, path(path));
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(String path)
+	{
+		return (T) GPath.of(path(path)).evaluate(parsed.json());
+	}
+
+	public String getString(String path)
+	{
+		Object value = get(path);
+		return value == null ? null : value.toString();
+	}
+
+	public int getInt(String path)
+	{
+		Object value = get(path);
+		if(!(value instanceof Number))
+			throw new IllegalArgumentException("No number at " + path(path) + " in " + asString());
+		return ((Number) value).intValue();
+	}
+
+	//проверка значения по выражению path, возвращает этот же ответ для следующих проверок
+	public ParsedResponse body(String path, Matcher<?> matcher)
+	{
+		assertThat("JSON path " + path(path) + " doesn't match.", get(path), matcher);
+		return this;
+	}
+
+	//проверка всего JSON (или его части под root(...)), например GPathMatcher.timelineContains(id)
+	public ParsedResponse body(Matcher<? super Object> matcher)
+	{
+		assertThat(json(), matcher);
+		return this;
+	}
+
+	private String path(String path)
+	{
+		if(root.isEmpty())
+			return path;
+		return path.isEmpty() ? root : root + "." + path;
+	}
+
+	//тело ответа и его разобранное дерево, создаются по первому требованию
+	private static class Parsed {
+		private final Response response;
+		private String body;
+		private Object json;
+		private JsonPath jsonPath;
+
+		Parsed(Response response)
+		{
+			this.response = response;
+		}
+
+		synchronized String body()
+		{
+			if(body == null)
+				body = response.asString();
+			return body;
+		}
+
+		synchronized Object json()
+		{
+			if(json == null)
+				json = GPath.parse(body());
+			return json;
+		}
+
+		synchronized JsonPath jsonPath()
+		{
+			if(jsonPath == null)
+			{
+				//JsonPath разбирает тело при первом get и дальше хранит дерево
+				jsonPath = new JsonPath(body());
+				ParseStats.parsed(body().length());
+			}
+			return jsonPath;
+		}
+	}
+}
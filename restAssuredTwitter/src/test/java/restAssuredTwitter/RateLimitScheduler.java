@@ -0,0 +1,203 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.RequestDirector;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import io.restassured.filter.Filter;
+
+/*
+ * Учёт ограничений Twitter API на число запросов:
+ * https://developer.twitter.com/en/docs/basics/rate-limiting
+ * Twitter считает запросы отдельно для каждого аккаунта и каждого запроса API и сообщает остаток в заголовках ответа:
+ *   x-rate-limit-limit     - сколько запросов разрешено в окне (обычно 15 минут);
+ *   x-rate-limit-remaining - сколько осталось;
+ *   x-rate-limit-reset     - когда окно закончится (секунды с 1970 года).
+ * Для каждой пары аккаунт + запрос (метод и шаблон пути, например POST /1.1/statuses/destroy/{id_str}.json) заводится корзина,
+ * которая узнаёт ограничения из этих заголовков. Пока в окне остались запросы, корзина их выдаёт, а когда они кончились,
+ * запрос ждёт конца окна, вместо того чтобы получить 429 TOO MANY REQUESTS. Запросы других аккаунтов и к другим запросам API
+ * при этом не задерживаются.
+ * Если 429 всё же пришёл (квоту расходует кто-то ещё), запрос повторяется после конца окна.
+ * Работает в двух местах:
+ *   filter(account)  - фильтр REST Assured в спецификациях аккаунта (см. TwitterAccount): ждёт, пока корзина выдаст запрос;
+ *   wrap(director)   - обёртка HttpClient (см. HttpConnectionPool): обновляет корзину по заголовкам каждого ответа и повторяет запрос после 429.
+ *                      Повтор выполняется внутри HttpClient, поэтому подпись OAuth для него создаётся заново.
+ * AsyncTwitterClient берёт те же корзины через bucket(...), но не ждёт в потоке: Bucket.tryAcquire() сообщает, сколько ждать,
+ * и запрос откладывается на это время, а после 429 клиент сам повторяет запрос (не больше MAX_RETRIES раз).
+ * Настройки задаются системными свойствами:
+ *   ratelimit.maxWaitSeconds - дольше этого запрос не ждёт, а отправляется как есть (по умолчанию 900 - окно Twitter);
+ *   ratelimit.maxRetries     - сколько раз повторять запрос после 429 (по умолчанию 3).
+ * */
+
+public class RateLimitScheduler {
+	private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("ratelimit.maxWaitSeconds", 900));
+	static final int MAX_RETRIES = Integer.getInteger("ratelimit.maxRetries", 3);
+	//пауза после 429 без заголовка x-rate-limit-reset
+	private static final long DEFAULT_RETRY_MILLIS = 1000;
+
+	//аккаунт и запрос -> корзина
+	private static final Map<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+	//корзина запроса, который сейчас выполняется в этом потоке: фильтр передаёт её обёртке HttpClient
+	private static final ThreadLocal<Bucket> current = new ThreadLocal<Bucket>();
+
+	//фильтр REST Assured для запросов аккаунта
+	public static Filter filter(TwitterAccount account)
+	{
+		return (request, response, context) -> {
+			Bucket bucket = bucket(account, request.getMethod(), request.getBasePath() + request.getUserDefinedPath());
+			bucket.acquire();
+			current.set(bucket);
+			try {
+				return context.next(request, response);
+			} finally {
+				current.remove();
+			}
+		};
+	}
+
+	//корзина аккаунта для запроса method path, path - шаблон пути вместе с базовым: /1.1/statuses/destroy/{id_str}.json
+	static Bucket bucket(TwitterAccount account, String method, String path)
+	{
+		return buckets.computeIfAbsent(account.getName() + " " + method + " " + path, key -> new Bucket());
+	}
+
+	//обёртка над выполнением запроса в HttpClient; RequestDirector устарел, но другой точки перехвата у DefaultHttpClient нет (см. HttpConnectionPool)
+	@SuppressWarnings("deprecation")
+	public static RequestDirector wrap(RequestDirector director)
+	{
+		return (target, request, context) -> execute(director, target, request, context);
+	}
+
+	@SuppressWarnings("deprecation")
+	private static HttpResponse execute(RequestDirector director, HttpHost target, HttpRequest request, HttpContext context) throws HttpException, IOException
+	{
+		Bucket bucket = current.get();
+		for(int attempt = 0; ; attempt++)
+		{
+			HttpResponse response = director.execute(target, request, context);
+			if(bucket == null)
+				return response;
+			bucket.update(response);
+			if(response.getStatusLine().getStatusCode() != 429 || attempt == MAX_RETRIES || !isRepeatable(request) || !bucket.reject())
+				return response;
+
+			//освобождаем соединение и ждём конца окна
+			EntityUtils.consume(response.getEntity());
+			bucket.acquire();
+		}
+	}
+
+	private static boolean isRepeatable(HttpRequest request)
+	{
+		if(!(request instanceof HttpEntityEnclosingRequest))
+			return true;
+		HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+		return enclosing.getEntity() == null || enclosing.getEntity().isRepeatable();
+	}
+
+	/*
+	 * Корзина одного аккаунта и одного запроса API.
+	 * Ограничения неизвестны, пока не пришёл первый ответ с заголовками x-rate-limit-*, до тех пор запросы не задерживаются.
+	 * Запросы, отправленные, но ещё не получившие ответ, уже вычтены из remaining, поэтому из ответа берётся меньшее из двух значений,
+	 * кроме случая, когда началось новое окно.
+	 * */
+	static class Bucket {
+		private int limit = -1;
+		private int remaining = -1;
+		//конец окна, в миллисекундах; 0 - неизвестен
+		private long resetAt;
+
+		//ждём, пока в окне будет свободный запрос, и занимаем его
+		synchronized void acquire()
+		{
+			long wait;
+			while((wait = tryAcquire()) > 0)
+				pause(wait);
+		}
+
+		//занимаем свободный запрос, если он есть, и возвращаем 0, иначе - сколько миллисекунд ждать до конца окна
+		synchronized long tryAcquire()
+		{
+			long now = System.currentTimeMillis();
+			if(resetAt != 0 && now >= resetAt)
+			{
+				//окно закончилось, до следующего ответа считаем, что квота восстановилась полностью
+				remaining = limit;
+				resetAt = 0;
+			}
+			if(remaining != 0 || resetAt == 0 || resetAt - now > MAX_WAIT_MILLIS)
+			{
+				if(remaining > 0)
+					remaining--;
+				return 0;
+			}
+			return resetAt - now;
+		}
+
+		/*
+		 * Запрос получил 429: квота исчерпана до конца окна (или на DEFAULT_RETRY_MILLIS, если конец окна неизвестен).
+		 * Возвращает false, если ждать пришлось бы дольше MAX_WAIT_MILLIS - тогда запрос не повторяется.
+		 * */
+		synchronized boolean reject()
+		{
+			remaining = 0;
+			long now = System.currentTimeMillis();
+			if(resetAt == 0)
+				resetAt = now + DEFAULT_RETRY_MILLIS;
+			return resetAt - now <= MAX_WAIT_MILLIS;
+		}
+
+		//обновляем ограничения по заголовкам ответа
+		synchronized void update(HttpResponse response)
+		{
+			Long headerLimit = longHeader(response, "x-rate-limit-limit");
+			Long headerRemaining = longHeader(response, "x-rate-limit-remaining");
+			Long headerReset = longHeader(response, "x-rate-limit-reset");
+			if(headerRemaining == null || headerReset == null)
+				return;
+
+			long reset = TimeUnit.SECONDS.toMillis(headerReset);
+			if(headerLimit != null)
+				limit = headerLimit.intValue();
+			if(reset != resetAt || remaining < 0)
+				remaining = headerRemaining.intValue();
+			else
+				remaining = Math.min(remaining, headerRemaining.intValue());
+			resetAt = reset;
+			notifyAll();
+		}
+
+		private void pause(long millis)
+		{
+			try {
+				wait(Math.max(millis, 1));
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the rate limit window to reset", e);
+			}
+		}
+
+		private static Long longHeader(HttpResponse response, String name)
+		{
+			Header header = response.getFirstHeader(name);
+			if(header == null)
+				return null;
+			try {
+				return Long.valueOf(header.getValue().trim());
+			} catch(NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -3,13 +3,13 @@ package restAssuredTwitter;
 import static io.restassured.RestAssured.*;
 
 import static org.hamcrest.Matchers.*;
+import static restAssuredTwitter.JsonFieldsMatcher.*;
 
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.AfterEach;
-import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 
-import io.restassured.authentication.OAuthSignature;
 import io.restassured.response.Response;
 
 /*
@@ -17,23 +17,12 @@ import io.restassured.response.Response;
  * https://developer.twitter.com/en/docs/tweets/post-and-engage/api-reference/post-statuses-retweet-id
  * Первоначальное сообщение будет храниться в retweeted_status.
  * При успешном ретвите у ретвитнутого поста увеличивается retweet_count на 1, поле retweeted становится равным true.
+ * Твиты для ретвитов создаются заранее и параллельно, тест-кейсы получают их параметром TweetFixture (см. TweetFixtureExtension).
+ * Аккаунты выдаются тест-кейсу в аренду (см. TwitterAccountExtension): автор твита - tweet.getAuthor(), второй аккаунт - параметр account2.
  * */
 
+@ExtendWith({TwitterAccountExtension.class, TweetFixtureExtension.class})
 class RetweetTestSuite {
-	//Добавляем переменную класса AuthorizationDataStorage чтоб иметь доступ к данным, необходимым для авторизации.
-	static final AuthorizationDataStorage authData = new AuthorizationDataStorage();
-			
-	/*
-	 * Начальные установки для набора тестов
-	 * */
-	@BeforeAll
-	static void setUp()
-	{
-		//устанавливаем стандартный путь для запросов на взаимодействие с твитами
-		baseURI = "https://api.twitter.com";
-		basePath = "/1.1/statuses";
-	}
-			
 	/*
 	 * Функция выполняемая после каждого тест-кейса.
 	 * Необходима для удаления созданных в тест-кейсе твитов.
@@ -51,33 +40,20 @@ class RetweetTestSuite {
 	 * retweet_count у сообщения должен увеличиться на 1, retweeted должен стать true
 	 * */
 	@Test
-	void testCase01() {
-		String message = "a";
-		
-		//создаём твит
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).
-				with().
-				post("/update.json");
-		
-		response.then().statusCode(HttpStatus.SC_OK); 			//постинг прошёл успешно
-		
-		String id = response.jsonPath().getString("id_str");
-		int retweet_count = response.jsonPath().getInt("retweet_count");
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);
+	void testCase01(TweetFixture tweet) {
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
+		int retweet_count = tweet.getRetweetCount();
 
 		//пытаемся заретвитить наш собственный твит
-		response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		Response response = given(tweet.getAuthor().statusesSpec()).
 				pathParam("tweet_id", id).
 				with().
 				post("/retweet/{tweet_id}.json");
 
 		response.then().statusCode(HttpStatus.SC_OK); 							//ретвит завершился успешно
-		response.then().root("retweeted_status").
+		//тело ответа разбирается один раз на все три проверки (см. ParsedResponse)
+		ParsedResponse.of(response).root("retweeted_status").
 						body("id_str", equalTo(id)).							//проверяем, что ретвит ссылается на твит созданный в начале выполнения тесткейса
 						body("retweet_count", equalTo(retweet_count + 1)).		//проверяем, что количество ретвитов у первоначального сообщения увеличилось на 1
 						body("retweeted", equalTo(true));						//провепяем, что у первоначального твита статус "retweeted" изменился на true
@@ -91,27 +67,13 @@ class RetweetTestSuite {
 	 * После попытки второго ретвита retweet_count у сообщения должен не должен увеличиться.
 	 * */
 	@Test
-	void testCase02() {
-		String message = "a";
-		
-		//создаём твит
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).
-				with().
-				post("/update.json");
-		
-		response.then().statusCode(HttpStatus.SC_OK); 			//постинг прошёл успешно
-		
-		String id = response.jsonPath().getString("id_str");
-		int retweet_count = response.jsonPath().getInt("retweet_count");
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);
+	void testCase02(TweetFixture tweet) {
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
+		int retweet_count = tweet.getRetweetCount();
 		
 		//пытаемся заретвитить наш собственный твит первый раз
-		given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		given(tweet.getAuthor().statusesSpec()).
 		pathParam("tweet_id", id).
 		with().
 		post("/retweet/{tweet_id}.json").
@@ -119,25 +81,16 @@ class RetweetTestSuite {
 		statusCode(HttpStatus.SC_OK);							//первый ретвит должен завершиться успешно
 				
 		//пытаемся заретвитить наш собственный твит второй раз
-		response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		Response response = given(tweet.getAuthor().statusesSpec()).
 				pathParam("tweet_id", id).
 				with().
 				post("/retweet/{tweet_id}.json");
 
 		response.then().statusCode(HttpStatus.SC_FORBIDDEN);	//попытка второго ретвита должна завершиться с ошибкой 403 FORBIDDEN
-		response.then().body("errors.code", hasItem(327));		//в JSON должна содержаться ошибка 327
+		response.then().body(jsonField("errors[*].code", hasItem(327)));		//в JSON должна содержаться ошибка 327
 		
-		//с помощью запроса GET /show.json получим доступ к первоначальному твиту и проверим, что количество ретвитов увеличилось только на 1
-		given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-		param("id", id).
-		with().
-		get("/show.json").
-		then().
-		body("retweet_count", equalTo(retweet_count + 1));
+		//с помощью запроса GET /lookup.json (общего с другими проверками, см. TweetLookup) получим первоначальный твит и проверим, что количество ретвитов увеличилось только на 1
+		Eventually.awaitLookup(tweet.getAuthor(), id, "retweet_count", equalTo(retweet_count + 1));
 	}
 	
 	/*
@@ -146,48 +99,24 @@ class RetweetTestSuite {
 	 * Ретвитнутый твит должен появиться в ленье у второго аккаунта.
 	 * */
 	@Test
-	void testCase03()
+	void testCase03(TweetFixture tweet, TwitterAccount account2)
 	{
-		String message = "a";
-		
-		//создаём твит с первого аккаунта
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).
-				with().
-				post("/update.json");
-		
-		response.then().statusCode(HttpStatus.SC_OK); 			//постинг прошёл успешно
-				
-		String id = response.jsonPath().getString("id_str");
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
 		
 		//Ретвитим его со второго аккаунта
-		response = given().
-				auth().
-				oauth(authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2, OAuthSignature.HEADER).
+		Response response = given(account2.statusesSpec()).
 				pathParam("tweet_id", id).
 				with().
 				post("/retweet/{tweet_id}.json");
 
 		response.then().statusCode(HttpStatus.SC_OK); 					//ретвит прошёл успешно
-		String retweet_id = response.jsonPath().getString("id_str");	//запоминаем id ретвита
-		
-		String matching_str = String.format("find {it.id_str == '%s'}", retweet_id);		//строка для поиска твита с retweet_id в возвращённом 
-																						//GET /statuses/user_timeline списке
+		String retweet_id = JsonFields.getString(response, "id_str");	//запоминаем id ретвита
 		
 		//проверяем добавился ли ретвит в ленту второго аккаунта с помощью GET /statuses/user_timeline
-		//в ответе должен придти JSON со списком твитов второго акка
-		//одним из объектов должен быть ретвит созданный ретвит
-		given().
-		auth().
-		oauth(authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2, OAuthSignature.HEADER).
-		param("screen_name", authData.consumer_2_Name).
-		with().
-		get("/user_timeline.json").
-		then().
-		body(matching_str, is(not(empty())));
+		//лента догружается только новыми твитами, пока в ней не появится созданный ретвит (см. TimelineCache, Eventually)
+		TimelineCache timeline = TimelineCache.of(account2);
+		Eventually.await("retweet " + retweet_id + " in timeline of " + account2, () -> timeline.contains(retweet_id));
 	}
 	
 	/*
@@ -198,25 +127,13 @@ class RetweetTestSuite {
 
 	 * */
 	@Test
-	void testCase04()
+	void testCase04(TweetFixture tweet)
 	{
-		String message = "a";
-			
-		//создаём твит с первого аккаунта
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).
-				with().
-				post("/update.json");
-			
-		response.then().statusCode(HttpStatus.SC_OK); 					//постинг прошёл успешно
-		String id = response.jsonPath().getString("id_str");
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
 		
 		//удаляем твит
-		given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		given(tweet.getAuthor().statusesSpec()).
 		pathParam("id_str", id).									
 		with().
 		post("/destroy/{id_str}.json").
@@ -224,15 +141,13 @@ class RetweetTestSuite {
 		statusCode(HttpStatus.SC_OK);									//удаление завершилось успешно
 		
 		//пытаемся ретвитнуть удалённый твит
-		response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		Response response = given(tweet.getAuthor().statusesSpec()).
 				pathParam("tweet_id", id).
 				with().
 				post("/retweet/{tweet_id}.json");
 		
 		response.then().statusCode(HttpStatus.SC_NOT_FOUND);	//попытка второго ретвита должна завершиться с ошибкой 404 NOT FOUND
-		response.then().body("errors.code", hasItem(144));		//в JSON должна содержаться ошибка 144
+		response.then().body(jsonField("errors[*].code", hasItem(144)));		//в JSON должна содержаться ошибка 144
 	}
 	
 	/*
@@ -243,66 +158,35 @@ class RetweetTestSuite {
 	 * */
 	
 	@Test
-	void testCase05()
+	void testCase05(TweetFixture tweet, TwitterAccount account2)
 	{
-		String message = "a";
-		
-		//создаём твит с первого аккаунта
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).
-				with().
-				post("/update.json");
-			
-		response.then().statusCode(HttpStatus.SC_OK); 						//постинг прошёл успешно
-		String id = response.jsonPath().getString("id_str");				//сохраняем id твита
-		int retweet_count = response.jsonPath().getInt("retweet_count");	//сохраняем количество ретвитов на момент создания
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);		//добавляем твит к сборщику мусора
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();									//сохраняем id твита
+		int retweet_count = tweet.getRetweetCount();				//сохраняем количество ретвитов на момент создания
 		
 		//Ретвитим его со второго аккаунта
-		response = given().
-				auth().
-				oauth(authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2, OAuthSignature.HEADER).
+		Response response = given(account2.statusesSpec()).
 				pathParam("tweet_id", id).
 				with().
 				post("/retweet/{tweet_id}.json");
 
 		response.then().statusCode(HttpStatus.SC_OK); 					//ретвит прошёл успешно
-		String retweet_id = response.jsonPath().getString("id_str");	//запоминаем id ретвита
+		String retweet_id = JsonFields.getString(response, "id_str");	//запоминаем id ретвита
 		
 		//пытаемся удалить ретвит с помощью POST statuses/unretweet/:id
-		response = given().
-				auth().
-				oauth(authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2, OAuthSignature.HEADER).
+		response = given(account2.statusesSpec()).
 				pathParam("tweet_id", retweet_id).
 				with().
 				post("/unretweet/{tweet_id}.json");
 
 		response.then().statusCode(HttpStatus.SC_OK); 					//удаление прошло успешно
 		
-		String matching_str = String.format("find {it.id_str == '%s'}", retweet_id);		//строка для поиска твита с retweet_id в возвращённом 
-																							//GET /statuses/user_timeline списке
 		//проверяем удалился ли ретвит из ленты второго аккаунта GET /statuses/user_timeline
-		//в ответе должен придти JSON со списком твитов второго акка
-		//в нём не должно быть твитов с id_str == retweet_id
-		given().
-		auth().
-		oauth(authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2, OAuthSignature.HEADER).
-		param("screen_name", authData.consumer_2_Name).
-		with().
-		get("/user_timeline.json").
-		then().
-		body(matching_str, equalTo(null));					//если не будет найден твит с id_str == retweet_id, то поиск по matching_str вернёт null
+		//запрашивается только место ленты, где был ретвит с id_str == retweet_id, ждём, пока он пропадёт (см. TimelineCache, Eventually)
+		TimelineCache timeline = TimelineCache.of(account2);
+		Eventually.await("retweet " + retweet_id + " removed from timeline of " + account2, () -> timeline.isAbsent(retweet_id));
 		
-		//с помощью запроса GET /show.json получим доступ к первоначальному твиту и проверим, что количество ретвитов стало таким же как и было до ретвита и удаления ретвита
-		given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-		param("id", id).
-		with().
-		get("/show.json").
-		then().
-		body("retweet_count", equalTo(retweet_count));
+		//с помощью запроса GET /lookup.json (общего с другими проверками, см. TweetLookup) получим первоначальный твит и проверим, что количество ретвитов стало таким же как и было до ретвита и удаления ретвита
+		Eventually.awaitLookup(tweet.getAuthor(), id, "retweet_count", equalTo(retweet_count));
 	}
 }
@@ -0,0 +1,129 @@
+package restAssuredTwitter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * История длительности тест-кейсов между прогонами.
+ * После каждого прогона длительность успешно завершившихся тест-кейсов записывается в файл
+ * (системное свойство test.durations.file, по умолчанию test-durations-<local|real|replay>.txt в каталоге проекта - у заменителя и настоящего API
+ * времена разные), а LongestFirstOrder по этой истории запускает первыми самые долгие наборы и тест-кейсы.
+ * Файл лежит вне target, чтоб его не стирал mvn clean: его можно закоммитить или сохранять в кэше CI между сборками.
+ * В истории хранится сглаженное значение: половина старого и половина нового, поэтому один случайно медленный прогон
+ * не переворачивает порядок, а ускорение теста учитывается за пару прогонов.
+ * Ключ тест-кейса - имя класса и метода: restAssuredTwitter.RetweetTestSuite#testCase03.
+ * Формат файла - строка на тест-кейс: "миллисекунды ключ". Файл переписывается целиком через временный файл.
+ * report() - самые долгие тест-кейсы прогона (их количество - свойство test.durations.report, по умолчанию 10) вместе с историей.
+ * */
+
+public class TestDurations {
+	private static final Path FILE = Paths.get(System.getProperty("test.durations.file", "test-durations-" + TwitterEndpoints.targetName() + ".txt"));
+	private static final int REPORT_SIZE = Integer.getInteger("test.durations.report", 10);
+
+	//длительность из истории прошлых прогонов: ключ -> миллисекунды
+	private static final Map<String, Long> history = load();
+	//длительность в этом прогоне: ключ -> миллисекунды (повторы одного метода, например параметризованного, складываются)
+	private static final Map<String, Long> measured = new ConcurrentHashMap<String, Long>();
+
+	//ключ тест-кейса
+	public static String key(String className, String methodName)
+	{
+		return className + "#" + methodName;
+	}
+
+	//длительность тест-кейса по истории, null - тест-кейс ещё не выполнялся
+	public static Long expected(String key)
+	{
+		return history.get(key);
+	}
+
+	//тест-кейс key выполнялся millis миллисекунд
+	public static void measured(String key, long millis)
+	{
+		measured.merge(key, millis, Long::sum);
+	}
+
+	//дописываем этот прогон в историю; тест-кейсы, которые в этот раз не выполнялись, остаются как были
+	public static void save()
+	{
+		if(measured.isEmpty())
+			return;
+		Map<String, Long> updated = new TreeMap<String, Long>(history);
+		for(Map.Entry<String, Long> pair : measured.entrySet())
+		{
+			Long previous = history.get(pair.getKey());
+			updated.put(pair.getKey(), previous == null ? pair.getValue() : (previous + pair.getValue()) / 2);
+		}
+
+		try {
+			if(FILE.toAbsolutePath().getParent() != null)
+				Files.createDirectories(FILE.toAbsolutePath().getParent());
+			Path temp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+			try(BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				for(Map.Entry<String, Long> pair : updated.entrySet())
+				{
+					writer.write(pair.getValue() + " " + pair.getKey());
+					writer.newLine();
+				}
+			}
+			Files.move(temp, FILE, StandardCopyOption.REPLACE_EXISTING);
+		} catch(IOException e) {
+			System.err.println("Unable to save test durations to " + FILE + ": " + e);
+		}
+	}
+
+	//самые долгие тест-кейсы этого прогона и их длительность по истории
+	public static String report()
+	{
+		List<Map.Entry<String, Long>> tests = new ArrayList<Map.Entry<String, Long>>(measured.entrySet());
+		tests.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+		long total = 0;
+		for(Map.Entry<String, Long> pair : tests)
+			total += pair.getValue();
+
+		StringBuilder report = new StringBuilder(String.format("Slowest tests (%d of %d, %d ms in all tests, history: %s)",
+				Math.min(REPORT_SIZE, tests.size()), tests.size(), total, FILE));
+		for(Map.Entry<String, Long> pair : tests.subList(0, Math.min(REPORT_SIZE, tests.size())))
+		{
+			Long previous = history.get(pair.getKey());
+			report.append(String.format("%n  %-64s %7d ms %5.1f%%   history %s", pair.getKey(), pair.getValue(),
+					total == 0 ? 0.0 : 100.0 * pair.getValue() / total, previous == null ? "-" : previous + " ms"));
+		}
+		return report.toString();
+	}
+
+	private static Map<String, Long> load()
+	{
+		Map<String, Long> loaded = new ConcurrentHashMap<String, Long>();
+		try {
+			for(String line : Files.readAllLines(FILE, StandardCharsets.UTF_8))
+			{
+				int space = line.indexOf(' ');
+				if(space <= 0)
+					continue;
+				try {
+					loaded.put(line.substring(space + 1), Long.parseLong(line.substring(0, space)));
+				} catch(NumberFormatException e) {
+					//испорченная строка - этот тест-кейс просто считается новым
+				}
+			}
+		} catch(NoSuchFileException e) {
+			//первый прогон - истории ещё нет
+		} catch(IOException e) {
+			throw new UncheckedIOException("Unable to read test durations from " + FILE, e);
+		}
+		return loaded;
+	}
+}
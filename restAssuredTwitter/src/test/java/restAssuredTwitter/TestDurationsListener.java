@@ -0,0 +1,50 @@
+package restAssuredTwitter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+/*
+ * Слушатель JUnit Platform, который подключается через META-INF/services/org.junit.platform.launcher.TestExecutionListener.
+ * Замеряет длительность каждого тест-кейса вместе с его @BeforeEach/@AfterEach (там удаляются твиты тест-кейса),
+ * после всех тестов сохраняет её в историю и выводит самые долгие тест-кейсы (см. TestDurations).
+ * В историю попадают только успешные тест-кейсы: упавший может закончиться и раньше, и позже обычного.
+ * Тест-кейсы могут выполняться параллельно, поэтому время начала хранится по уникальному id тест-кейса, а не в поле.
+ * */
+
+public class TestDurationsListener implements TestExecutionListener {
+	//уникальный id тест-кейса -> время начала, в наносекундах
+	private final Map<String, Long> started = new ConcurrentHashMap<String, Long>();
+
+	@Override
+	public void executionStarted(TestIdentifier testIdentifier)
+	{
+		if(testIdentifier.isTest())
+			started.put(testIdentifier.getUniqueId(), System.nanoTime());
+	}
+
+	@Override
+	public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult)
+	{
+		Long start = started.remove(testIdentifier.getUniqueId());
+		if(start == null || testExecutionResult.getStatus() != TestExecutionResult.Status.SUCCESSFUL)
+			return;
+		//параметризованные и повторяемые тест-кейсы - тот же метод, их время складывается
+		testIdentifier.getSource().filter(MethodSource.class::isInstance).map(MethodSource.class::cast).ifPresent(method ->
+				TestDurations.measured(TestDurations.key(method.getClassName(), method.getMethodName()),
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+	}
+
+	@Override
+	public void testPlanExecutionFinished(TestPlan testPlan)
+	{
+		TestDurations.save();
+		System.out.println(TestDurations.report());
+	}
+}
@@ -0,0 +1,126 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.restassured.internal.util.IOUtils;
+
+/*
+ * Кеш тестовых ресурсов (src/test/resources): каждый файл читается с диска один раз на JVM.
+ *   text(name)              - содержимое как текст в UTF-8 (а не в кодировке платформы);
+ *   text(name, codePoints)  - первые codePoints символов текста, суррогатные пары не разрезаются;
+ *   bytes(name)             - содержимое только для чтения; у каждого вызова своя позиция, сами байты общие;
+ *   stream(name)            - поток для чтения содержимого, например для ChunkedMediaUploader.upload;
+ *   size(name)              - размер в байтах.
+ * Ресурс, который лежит в файле (target/test-classes), отображается в память (FileChannel.map), и картинки в несколько мегабайт
+ * не копируются в кучу: страницы читает ОС, и параллельные тест-кейсы делят одну копию. Ресурс из jar читается в массив.
+ * Содержимое ресурсов не должно меняться во время прогона (ImageFixtures.ensureExists вызывается до первого обращения к картинке).
+ * */
+
+public class TestResources {
+	//имя ресурса -> содержимое, только для чтения
+	private static final Map<String, ByteBuffer> contents = new ConcurrentHashMap<String, ByteBuffer>();
+	//имя ресурса -> текст
+	private static final Map<String, String> texts = new ConcurrentHashMap<String, String>();
+
+	public static String text(String name)
+	{
+		return texts.computeIfAbsent(name, key -> StandardCharsets.UTF_8.decode(bytes(key)).toString());
+	}
+
+	//начало текста длиной codePoints символов Unicode (как считает длину твита Twitter)
+	public static String text(String name, int codePoints)
+	{
+		String text = text(name);
+		return text.substring(0, text.offsetByCodePoints(0, codePoints));
+	}
+
+	public static ByteBuffer bytes(String name)
+	{
+		return contents.computeIfAbsent(name, TestResources::load).duplicate();
+	}
+
+	public static InputStream stream(String name)
+	{
+		return new ByteBufferInputStream(bytes(name));
+	}
+
+	public static long size(String name)
+	{
+		return bytes(name).remaining();
+	}
+
+	private static ByteBuffer load(String name)
+	{
+		URL url = Thread.currentThread().getContextClassLoader().getResource(name);
+		if(url == null)
+			throw new IllegalArgumentException("Test resource not found: " + name);
+		try {
+			if(url.getProtocol().equals("file"))
+			{
+				try(FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+					return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				}
+			}
+			try(InputStream is = url.openStream()) {
+				return ByteBuffer.wrap(IOUtils.toByteArray(is)).asReadOnlyBuffer();
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException("Unable to read test resource " + name, e);
+		} catch(URISyntaxException e) {
+			throw new IllegalArgumentException("Unable to read test resource " + name, e);
+		}
+	}
+
+	//поток поверх своей копии позиции в общем буфере
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			if(len == 0)
+				return 0;
+			if(!buffer.hasRemaining())
+				return -1;
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n)
+		{
+			int count = (int) Math.max(Math.min(n, buffer.remaining()), 0);
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package restAssuredTwitter;
+
+import static io.restassured.RestAssured.given;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.HttpStatus;
+
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+
+/*
+ * Локальная копия ленты пользователя (GET statuses/user_timeline) с индексами по id_str и по тексту твита.
+ * Вместо того чтоб на каждую проверку скачивать всю страницу ленты и перебирать её выражением GPath
+ * (find {it.id_str == '...'}), лента один раз скачивается и дальше только дополняется:
+ * sync() запрашивает твиты новее самого нового из уже известных (since_id), а если их больше, чем помещается на страницу,
+ * догружает остальные страницы (max_id). После этого проверки наличия твита - поиск в хеш-таблице.
+ * Удаление твита по since_id не увидеть, поэтому отсутствие проверяет isAbsent(id): он запрашивает ленту ровно на месте
+ * этого твита (since_id = id - 1, max_id = id) и убирает твит из индексов, если его там больше нет.
+ * Копии общие на весь прогон: одна на каждую пару "кто смотрит - чья лента", методы синхронизированы.
+ * Твиты, удалённые без проверки isAbsent, остаются в копии, поэтому contains(id) означает "твит был в ленте после его создания".
+ * */
+
+public class TimelineCache {
+	//количество твитов на странице ленты, больше Twitter не отдаёт
+	private static final int PAGE_SIZE = 200;
+
+	//"кто смотрит - чья лента" -> копия ленты
+	private static final Map<String, TimelineCache> caches = new ConcurrentHashMap<String, TimelineCache>();
+
+	private final TwitterAccount viewer;
+	private final String screenName;
+	//id_str -> твит
+	private final Map<String, Map<String, Object>> byId = new HashMap<String, Map<String, Object>>();
+	//текст -> id_str твитов с таким текстом, от старых к новым
+	private final Map<String, Set<String>> byText = new HashMap<String, Set<String>>();
+	//самый новый из полученных твитов, null - лента ещё не загружалась
+	private BigInteger newestId;
+
+	private TimelineCache(TwitterAccount viewer, String screenName)
+	{
+		this.viewer = viewer;
+		this.screenName = screenName;
+	}
+
+	//лента пользователя screenName, запрашиваемая от имени viewer
+	public static TimelineCache of(TwitterAccount viewer, String screenName)
+	{
+		return caches.computeIfAbsent(viewer.getName() + " " + screenName, key -> new TimelineCache(viewer, screenName));
+	}
+
+	//собственная лента аккаунта
+	public static TimelineCache of(TwitterAccount account)
+	{
+		return of(account, account.getName());
+	}
+
+	/*
+	 * Догружаем твиты, появившиеся с прошлой синхронизации.
+	 * Первая синхронизация загружает только одну, последнюю страницу ленты: более старые твиты тестам не нужны.
+	 * */
+	public synchronized void sync()
+	{
+		BigInteger since = newestId;
+		BigInteger maxId = null;
+		while(true)
+		{
+			List<Map<String, Object>> page = fetch(since, maxId);
+			BigInteger oldest = null;
+			for(Map<String, Object> tweet : page)
+			{
+				BigInteger id = new BigInteger(add(tweet));
+				if(newestId == null || id.compareTo(newestId) > 0)
+					newestId = id;
+				if(oldest == null || id.compareTo(oldest) < 0)
+					oldest = id;
+			}
+			//страница неполная - новых твитов больше нет
+			if(since == null || page.size() < PAGE_SIZE)
+				return;
+			maxId = oldest.subtract(BigInteger.ONE);
+		}
+	}
+
+	//был ли твит в ленте: сначала ищем в копии, если его там нет - догружаем новые твиты
+	public synchronized boolean contains(String id)
+	{
+		if(byId.containsKey(id))
+			return true;
+		sync();
+		return byId.containsKey(id);
+	}
+
+	//твит по id_str или null, если его нет в ленте
+	public synchronized Map<String, Object> get(String id)
+	{
+		return contains(id) ? byId.get(id) : null;
+	}
+
+	//id_str твитов с таким текстом, от старых к новым
+	public synchronized Set<String> idsWithText(String text)
+	{
+		sync();
+		Set<String> ids = byText.get(text);
+		return ids == null ? Collections.<String>emptySet() : new LinkedHashSet<String>(ids);
+	}
+
+	//нет ли твита в ленте сейчас: запрашиваем ленту только на месте этого твита
+	public synchronized boolean isAbsent(String id)
+	{
+		BigInteger value = new BigInteger(id);
+		for(Map<String, Object> tweet : fetch(value.subtract(BigInteger.ONE), value))
+		{
+			if(id.equals(add(tweet)))
+				return false;
+		}
+		remove(id);
+		return true;
+	}
+
+	//добавляем твит в индексы, возвращаем его id_str
+	private String add(Map<String, Object> tweet)
+	{
+		String id = String.valueOf(tweet.get("id_str"));
+		Map<String, Object> previous = byId.put(id, tweet);
+		if(previous != null)
+			unindexText(id, previous);
+		byText.computeIfAbsent(text(tweet), key -> new LinkedHashSet<String>()).add(id);
+		return id;
+	}
+
+	private void remove(String id)
+	{
+		Map<String, Object> tweet = byId.remove(id);
+		if(tweet != null)
+			unindexText(id, tweet);
+	}
+
+	private void unindexText(String id, Map<String, Object> tweet)
+	{
+		Set<String> ids = byText.get(text(tweet));
+		if(ids != null && ids.remove(id) && ids.isEmpty())
+			byText.remove(text(tweet));
+	}
+
+	//текст твита: full_text при tweet_mode=extended, иначе text
+	private static String text(Map<String, Object> tweet)
+	{
+		Object text = tweet.containsKey("full_text") ? tweet.get("full_text") : tweet.get("text");
+		return String.valueOf(text);
+	}
+
+	//одна страница ленты: твиты новее since и не новее maxId (любой из них может быть null)
+	@SuppressWarnings("unchecked")
+	private List<Map<String, Object>> fetch(BigInteger since, BigInteger maxId)
+	{
+		RequestSpecification request = given(viewer.statusesSpec()).
+				param("screen_name", screenName).
+				param("count", PAGE_SIZE);
+		if(since != null)
+			request.param("since_id", since.toString());
+		if(maxId != null)
+			request.param("max_id", maxId.toString());
+		Response response = request.
+				with().
+				get("/user_timeline.json");
+		if(response.statusCode() != HttpStatus.SC_OK)
+			throw new AssertionError("user_timeline of " + screenName + ": expected 200 but was " + response.statusLine() + " " + response.asString());
+		return (List<Map<String, Object>>) ParsedResponse.of(response).json();
+	}
+}
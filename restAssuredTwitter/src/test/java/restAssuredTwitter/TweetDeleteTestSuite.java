@@ -1,27 +1,31 @@
 package restAssuredTwitter;
 
-import static io.restassured.RestAssured.basePath;
-import static io.restassured.RestAssured.baseURI;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
+import static restAssuredTwitter.JsonFieldsMatcher.jsonField;
+
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 
-import io.restassured.authentication.OAuthSignature;
 import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 
 /*
  * Набор тестов для проверки корректности удаления твитов
  * https://developer.twitter.com/en/docs/tweets/post-and-engage/api-reference/post-statuses-destroy-id
+ * Удаляемые твиты создаются заранее и параллельно, тест-кейсы получают их параметром TweetFixture (см. TweetFixtureExtension).
+ * Аккаунты выдаются тест-кейсу в аренду (см. TwitterAccountExtension): автор твита - tweet.getAuthor(), чужой аккаунт - параметр account2.
  * */
 
+@ExtendWith({TwitterAccountExtension.class, TweetFixtureExtension.class})
 class TweetDeleteTestSuite {
 	
-	//Добавляем переменную класса AuthorizationDataStorage чтоб иметь доступ к данным, необходимым для авторизации.
-	static final AuthorizationDataStorage authData = new AuthorizationDataStorage();
+	//спецификация запросов, общая для всех тест-кейсов набора (вместо глобальных RestAssured.baseURI/basePath)
+	static RequestSpecification spec;
 		
 	/*
 	 * Начальные установки для набора тестов
@@ -29,9 +33,8 @@ class TweetDeleteTestSuite {
 	@BeforeAll
 	static void setUp()
 	{
-		//устанавливаем стандартный путь для запросов на взаимодействие с твитами
-		baseURI = "https://api.twitter.com";
-		basePath = "/1.1/statuses";
+		//спецификация запросов набора: адрес API (https://api.twitter.com или локальный заменитель, см. TwitterEndpoints) и путь /1.1/statuses
+		spec = TwitterEndpoints.statusesSpec();
 	}
 		
 	/*
@@ -49,56 +52,33 @@ class TweetDeleteTestSuite {
 	 * Сначала мы создадим твит, затем удалим его. В ответе мы должны получить 200 OK
 	 * */
 	@Test
-	void testCase01()
+	void testCase01(TweetFixture tweet)
 	{
-		String message = "a";	//отправляемое сообщение
-		
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).									//добавляем сообщение из одного символа
-				with().
-				post("/update.json");						
-		
-		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
 		
 		//удаляем твит методом /destroy/:id.json, передавая в pathParam id твита
-		response = given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		Response response = given(tweet.getAuthor().statusesSpec()).
 		pathParam("id_str", id).									
 		with().
 		post("/destroy/{id_str}.json");
 		
 		response.then().statusCode(HttpStatus.SC_OK);			//удаление должно завершиться ответом со статусом 200 OK
-		response.then().body("id_str", equalTo(id));			//в ответе должен придти JSON с удалённым твитом, сверяем ID
+		response.then().body(jsonField("id_str", equalTo(id)));			//в ответе должен придти JSON с удалённым твитом, сверяем ID
 	}
 	
 	/*
 	 * Проверка на возможность получить доступ к удалённому твиту через метод GET /show.json
-	 * Сначала мы создадим твит, затем удалим его. После того как тваит удалён попробуем получить к нему доступ через GET /show.json
-	 * В ответ мы должны получить 404 NOT FOUND
+	 * Сначала мы создадим твит, затем удалим его. После того как тваит удалён попробуем получить к нему доступ. В ответе мы должны получить 404 NOT FOUND
 	 * */
 	@Test
-	void testCase02()
+	void testCase02(TweetFixture tweet)
 	{
-		String message = "a";	//отправляемое сообщение
-		
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).									//добавляем сообщение из одного символа
-				with().
-				post("/update.json");						
-		
-		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
 		
 		//удаляем твит методом /destroy/:id.json, передавая в pathParam id твита
-		given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		given(tweet.getAuthor().statusesSpec()).
 		pathParam("id_str", id).									
 		with().
 		post("/destroy/{id_str}.json").
@@ -106,8 +86,7 @@ class TweetDeleteTestSuite {
 		statusCode(HttpStatus.SC_OK);			//удаление должно завершиться ответом со статусом 200 OK
 		
 		//пытаемся получить доступ к удалённому твиту
-		given().
-		auth().oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		given(tweet.getAuthor().statusesSpec()).
 		param("id", id).
 		when().
 		get("/show.json").
@@ -120,24 +99,13 @@ class TweetDeleteTestSuite {
 	 * Сначала мы создадим твит, затем попытаемся удалим его без авторизации. В ответе мы должны получить 400 BAD REQUEST
 	 * */
 	@Test
-	void testCase03()
+	void testCase03(TweetFixture tweet)
 	{
-		String message = "a";	//отправляемое сообщение
-		
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).									//добавляем сообщение из одного символа
-				with().
-				post("/update.json");						
-		
-		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
-		
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);	//добавляем твит в сборщик мусора
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
 		
 		//пытаемся удалить твит без авторизации методом /destroy/:id.json, передавая в pathParam id твита
-		response = given().
+		Response response = given(spec).
 				pathParam("id_str", id).									
 				with().
 				post("/destroy/{id_str}.json");
@@ -152,31 +120,18 @@ class TweetDeleteTestSuite {
 	 * {"code":183,"message":"You may not delete another user's status."}
 	 * */
 	@Test
-	void testCase04()
+	void testCase04(TweetFixture tweet, TwitterAccount account2)
 	{
-		String message = "a";	//отправляемое сообщение
-		
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-				param("status", message).									//добавляем сообщение из одного символа
-				with().
-				post("/update.json");						
-		
-		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
-		
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);	//добавляем твит в сборщик мусора
+		//твит создан заранее от имени tweet.getAuthor() (см. TweetFixturePool)
+		String id = tweet.getId();
 		
 		//пытаемся удалить твит со второго аккаунта /destroy/:id.json, передавая в pathParam id твита
-		response = given().
-				auth().
-				oauth(authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2, OAuthSignature.HEADER).
+		Response response = given(account2.statusesSpec()).
 				pathParam("id_str", id).									
 				with().
 				post("/destroy/{id_str}.json");
 		
 		response.then().statusCode(HttpStatus.SC_FORBIDDEN);			//попытка удаления должна завершиться ответом со статусом 403 FORBIDDEN
-		response.then().body("errors.code", hasItems(183));				//в JSON, получаемом в ответ, должна быть ошибка с кодом 183
+		response.then().body(jsonField("errors[*].code", hasItems(183)));				//в JSON, получаемом в ответ, должна быть ошибка с кодом 183
 	}
 }
@@ -0,0 +1,41 @@
+package restAssuredTwitter;
+
+/*
+ * Твит, созданный заранее для тест-кейса (см. TweetFixturePool): id и автор,
+ * а также retweet_count из ответа на POST statuses/update - на момент выдачи твит никто не ретвитил.
+ * Твит удаляется после тест-кейса, которому он выдан, если тест-кейс не удалил его сам.
+ * */
+
+public final class TweetFixture {
+	private final String id;
+	private final TwitterAccount author;
+	private final int retweetCount;
+
+	TweetFixture(String id, TwitterAccount author, int retweetCount)
+	{
+		this.id = id;
+		this.author = author;
+		this.retweetCount = retweetCount;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public TwitterAccount getAuthor()
+	{
+		return author;
+	}
+
+	public int getRetweetCount()
+	{
+		return retweetCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		return id + " by " + author;
+	}
+}
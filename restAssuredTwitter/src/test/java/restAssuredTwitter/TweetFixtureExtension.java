@@ -0,0 +1,66 @@
+package restAssuredTwitter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+/*
+ * Расширение JUnit, которое выдаёт тест-кейсам заранее созданные твиты (см. TweetFixturePool).
+ * Подключается к набору тестов через @ExtendWith(TweetFixtureExtension.class), после чего тест-кейс получает твит параметром:
+ *   @Test
+ *   void testCase01(TweetFixture tweet)
+ * Автор твитов - аккаунт, выданный тест-кейсу в аренду (см. TwitterAccountExtension), он не совпадает с аккаунтами из параметров TwitterAccount.
+ * Перед набором тестов (@BeforeAll) в фоне запускается создание стольких твитов, сколько параметров TweetFixture у его тест-кейсов;
+ * твиты раскладываются по всем аккаунтам по кругу. Автором тест-кейса становится свободный аккаунт, у которого в пуле есть твит,
+ * поэтому и при параллельном прогоне тест-кейс получает заранее созданный твит, а не создаёт его при выдаче.
+ * Твит создаётся при выдаче, только если у свободных аккаунтов заготовок не осталось.
+ * Выданный твит удаляется после тест-кейса (GarbageTweetsHandler.addFixture), невыданные - после всех тестов.
+ * */
+
+public class TweetFixtureExtension implements BeforeAllCallback, ParameterResolver {
+	private static final Namespace NAMESPACE = Namespace.create(TweetFixtureExtension.class);
+
+	@Override
+	public void beforeAll(ExtensionContext context)
+	{
+		//удаление невыданных твитов - один раз на прогон, когда JUnit закрывает корневой контекст
+		context.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent("drain", key -> (ExtensionContext.Store.CloseableResource) TweetFixturePool::drain);
+
+		int count = 0;
+		for(Method method : context.getRequiredTestClass().getDeclaredMethods())
+		{
+			if(!method.isAnnotationPresent(Test.class))
+				continue;
+			for(Parameter parameter : method.getParameters())
+			{
+				if(parameter.getType() == TweetFixture.class)
+					count++;
+			}
+		}
+		List<TwitterAccount> accounts = TwitterAccounts.all();
+		for(int i = 0; i < count; i++)
+			TweetFixturePool.prefill(accounts.get(i % accounts.size()), 1);
+	}
+
+	@Override
+	public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+	{
+		return parameterContext.getParameter().getType() == TweetFixture.class;
+	}
+
+	@Override
+	public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+	{
+		//твит сразу добавляется в сборщик мусора тест-кейса; если тест-кейс удалит его сам, сборщик это допускает
+		TweetFixture tweet = TweetFixturePool.lease(TwitterAccountExtension.fixtureAuthor(extensionContext));
+		GarbageTweetsHandler.addFixture(tweet.getId(), tweet.getAuthor());
+		return tweet;
+	}
+}
@@ -0,0 +1,98 @@
+package restAssuredTwitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.http.HttpStatus;
+
+/*
+ * Пул заранее созданных твитов. Многие тест-кейсы начинают с POST statuses/update только для того, чтоб было что ретвитнуть
+ * или удалить, и каждый платит за это последовательным запросом. Здесь твиты создаются заранее и параллельно:
+ * prefill(account, n) запускает создание n твитов в фоне и сразу возвращает управление (вызывается в @BeforeAll, см. TweetFixtureExtension),
+ * а lease(account) выдаёт готовый твит, дожидаясь его создания, если он ещё в пути, или создаёт новый, если пул пуст.
+ * Тексты твитов уникальны (Twitter не даёт запостить один и тот же текст дважды, см. UniqueMessages).
+ * Созданные твиты сразу записываются в журнал GarbageTweetsHandler, а невыданные удаляются в конце прогона (drain).
+ * Твиты создаются через AsyncTwitterClient: все запросы prefill уходят сразу и ждут ответа, не занимая потоков.
+ * */
+
+public class TweetFixturePool {
+	//аккаунт -> твиты в пути и готовые, в порядке запуска создания
+	private static final Map<TwitterAccount, Queue<CompletableFuture<TweetFixture>>> pools = new ConcurrentHashMap<TwitterAccount, Queue<CompletableFuture<TweetFixture>>>();
+
+	//запускаем создание count твитов аккаунта в фоне
+	public static void prefill(TwitterAccount account, int count)
+	{
+		Queue<CompletableFuture<TweetFixture>> pool = pool(account);
+		for(int i = 0; i < count; i++)
+			pool.add(create(account));
+	}
+
+	/*
+	 * Твит аккаунта для тест-кейса: из пула, а если пул пуст - созданный сейчас.
+	 * Если твит из пула создать не удалось, бросается AssertionError с ответом API, как если бы тест-кейс создавал его сам.
+	 * */
+	public static TweetFixture lease(TwitterAccount account)
+	{
+		CompletableFuture<TweetFixture> next = pool(account).poll();
+		if(next == null)
+			next = create(account);
+		try {
+			return next.join();
+		} catch(CompletionException e) {
+			if(e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
+	//есть ли у аккаунта твиты в пуле, готовые или ещё в пути
+	public static boolean hasTweets(TwitterAccount account)
+	{
+		Queue<CompletableFuture<TweetFixture>> pool = pools.get(account);
+		return pool != null && !pool.isEmpty();
+	}
+
+	//удаляем невыданные твиты всех аккаунтов, вызывается в конце прогона
+	public static void drain()
+	{
+		Map<String, TwitterAccount> unused = new LinkedHashMap<String, TwitterAccount>();
+		for(Queue<CompletableFuture<TweetFixture>> pool : pools.values())
+		{
+			for(CompletableFuture<TweetFixture> next = pool.poll(); next != null; next = pool.poll())
+			{
+				try {
+					TweetFixture tweet = next.join();
+					unused.put(tweet.getId(), tweet.getAuthor());
+				} catch(CompletionException e) {
+					//твит не создался - удалять нечего
+				}
+			}
+		}
+		if(!unused.isEmpty())
+			GarbageTweetsHandler.clearTweets(unused);
+	}
+
+	//POST statuses/update с уникальным текстом
+	private static CompletableFuture<TweetFixture> create(TwitterAccount account)
+	{
+		return AsyncTwitterClient.of(account).update(UniqueMessages.unique("fixture")).thenApply(response -> {
+			if(response.statusCode() != HttpStatus.SC_OK)
+				throw new AssertionError("Unable to create fixture tweet: " + response.statusLine() + " " + response.asString());
+
+			Map<String, Object> created = JsonFields.of("id_str", "retweet_count").read(response);
+			String id = (String) created.get("id_str");
+			GarbageTweetsHandler.journalTweet(id, account);
+			return new TweetFixture(id, account, ((Number) created.get("retweet_count")).intValue());
+		});
+	}
+
+	private static Queue<CompletableFuture<TweetFixture>> pool(TwitterAccount account)
+	{
+		return pools.computeIfAbsent(account, key -> new ConcurrentLinkedQueue<CompletableFuture<TweetFixture>>());
+	}
+}
@@ -0,0 +1,159 @@
+package restAssuredTwitter;
+
+import static io.restassured.RestAssured.given;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.HttpStatus;
+
+import io.restassured.response.Response;
+
+/*
+ * Пакетная проверка состояния твитов через GET statuses/lookup вместо отдельного GET statuses/show на каждый твит.
+ * Проверки копятся в очереди (request(id)), а flush() отправляет их пачками до 100 id на запрос - больше lookup не принимает.
+ * Запрос идёт с map=true: в ответе {"id": {"<id>": твит или null}} есть каждый запрошенный id, и null означает,
+ * что твита нет (удалён или не существует), поэтому отсутствие проверяется так же одним запросом, без 404 на каждый твит.
+ *   TweetLookup lookup = TweetLookup.of(account);
+ *   Set<String> gone = lookup.missing(ids);                       //сотни id - несколько запросов
+ *   Map<String, Object> tweet = lookup.lookup(id);                //один твит, null - твита нет
+ * Очередь общая на аккаунт (одна на весь прогон), поэтому проверки параллельных тест-кейсов объединяются:
+ * поток, вызвавший flush(), забирает из очереди и чужие проверки, а их авторы просто дожидаются своих результатов.
+ * Твиты отдаются с tweet_mode=extended (полный текст в full_text), значения - разобранный JSON (Map/List, см. GPath).
+ * Ошибка запроса lookup - AssertionError со статусом и телом ответа для всех проверок пачки.
+ * */
+
+public class TweetLookup {
+	//наибольшее число id в одном запросе statuses/lookup
+	public static final int MAX_IDS = 100;
+
+	//аккаунт, от имени которого проверяются твиты -> очередь
+	private static final Map<TwitterAccount, TweetLookup> lookups = new ConcurrentHashMap<TwitterAccount, TweetLookup>();
+
+	private final TwitterAccount viewer;
+	//ещё не отправленные проверки: id -> результат; повторная проверка того же id присоединяется к ожидающей. Под монитором this.
+	private final Map<String, CompletableFuture<Map<String, Object>>> pending = new LinkedHashMap<String, CompletableFuture<Map<String, Object>>>();
+
+	private TweetLookup(TwitterAccount viewer)
+	{
+		this.viewer = viewer;
+	}
+
+	public static TweetLookup of(TwitterAccount viewer)
+	{
+		return lookups.computeIfAbsent(viewer, TweetLookup::new);
+	}
+
+	//ставим id в очередь; результат - твит или null, если твита нет, появится после flush()
+	public synchronized CompletableFuture<Map<String, Object>> request(String id)
+	{
+		return pending.computeIfAbsent(id, key -> new CompletableFuture<Map<String, Object>>());
+	}
+
+	//отправляем все проверки из очереди, по MAX_IDS id на запрос
+	public void flush()
+	{
+		Map<String, CompletableFuture<Map<String, Object>>> batch;
+		while(!(batch = nextBatch()).isEmpty())
+			send(batch);
+	}
+
+	//твиты по id в том же порядке: id -> твит или null, если твита нет
+	public Map<String, Map<String, Object>> lookup(Collection<String> ids)
+	{
+		Map<String, CompletableFuture<Map<String, Object>>> requested = new LinkedHashMap<String, CompletableFuture<Map<String, Object>>>();
+		for(String id : ids)
+			requested.put(id, request(id));
+		flush();
+
+		Map<String, Map<String, Object>> found = new LinkedHashMap<String, Map<String, Object>>();
+		for(Map.Entry<String, CompletableFuture<Map<String, Object>>> pair : requested.entrySet())
+			found.put(pair.getKey(), join(pair.getValue()));
+		return found;
+	}
+
+	//один твит или null, если твита нет
+	public Map<String, Object> lookup(String id)
+	{
+		return lookup(Collections.singletonList(id)).get(id);
+	}
+
+	//id из ids, твитов с которыми нет
+	public Set<String> missing(Collection<String> ids)
+	{
+		Set<String> missing = new LinkedHashSet<String>();
+		for(Map.Entry<String, Map<String, Object>> pair : lookup(ids).entrySet())
+		{
+			if(pair.getValue() == null)
+				missing.add(pair.getKey());
+		}
+		return missing;
+	}
+
+	/*
+	 * Забираем из очереди следующие MAX_IDS проверок. Проверка того же id, поставленная после этого, ждёт следующего запроса,
+	 * а не присоединяется к отправленному: его ответ мог быть получен раньше изменения, которое она проверяет.
+	 * */
+	private synchronized Map<String, CompletableFuture<Map<String, Object>>> nextBatch()
+	{
+		Map<String, CompletableFuture<Map<String, Object>>> batch = new LinkedHashMap<String, CompletableFuture<Map<String, Object>>>();
+		Iterator<Map.Entry<String, CompletableFuture<Map<String, Object>>>> checks = pending.entrySet().iterator();
+		while(checks.hasNext() && batch.size() < MAX_IDS)
+		{
+			Map.Entry<String, CompletableFuture<Map<String, Object>>> check = checks.next();
+			batch.put(check.getKey(), check.getValue());
+			checks.remove();
+		}
+		return batch;
+	}
+
+	//GET statuses/lookup для пачки id и результаты всех её проверок
+	private void send(Map<String, CompletableFuture<Map<String, Object>>> batch)
+	{
+		try {
+			Response response = given(viewer.statusesSpec()).
+					param("id", String.join(",", batch.keySet())).
+					param("map", "true").
+					param("tweet_mode", "extended").
+					get("/lookup.json");
+			if(response.statusCode() != HttpStatus.SC_OK)
+				throw new AssertionError("GET statuses/lookup of " + batch.size() + " tweets failed: " + response.statusLine() + " " + response.asString());
+			Map<String, Object> found = ParsedResponse.of(response).get("id");
+			if(found == null)
+				throw new AssertionError("GET statuses/lookup returned no id map: " + response.asString());
+			for(Map.Entry<String, CompletableFuture<Map<String, Object>>> check : batch.entrySet())
+				check.getValue().complete(tweet(found.get(check.getKey())));
+		} catch(RuntimeException | AssertionError e) {
+			for(CompletableFuture<Map<String, Object>> result : batch.values())
+				result.completeExceptionally(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> tweet(Object json)
+	{
+		return (Map<String, Object>) json;
+	}
+
+	//результат проверки; ошибка запроса бросается как есть, без обёртки CompletionException
+	private static Map<String, Object> join(CompletableFuture<Map<String, Object>> result)
+	{
+		try {
+			return result.join();
+		} catch(CompletionException e) {
+			if(e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+}
@@ -3,28 +3,29 @@ package restAssuredTwitter;
 /*
  * Набор тестов для проверки запросов, отвечающих за постинг твитов и полдучение к ним доступа
  * https://developer.twitter.com/en/docs/tweets/post-and-engage/api-reference/post-statuses-update
- * 
+ * Тестовый аккаунт выдаётся каждому тест-кейсу в аренду параметром account1 (см. TwitterAccountExtension), параллельные тест-кейсы работают с разными аккаунтами.
  * */
 
 import org.apache.http.HttpStatus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 
-import io.restassured.authentication.OAuthSignature;
-import io.restassured.internal.util.IOUtils;
 import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 
 import static org.hamcrest.Matchers.*;
+import static restAssuredTwitter.JsonFieldsMatcher.*;
 
 import java.io.IOException;
-import java.io.InputStream;
 import static io.restassured.RestAssured.*;  
 
+@ExtendWith(TwitterAccountExtension.class)
 class TweetTestSuite {
 	
-	//Добавляем переменную класса AuthorizationDataStorage чтоб иметь доступ к данным, необходимым для авторизации.
-	static final AuthorizationDataStorage authData = new AuthorizationDataStorage();
+	//спецификация запросов, общая для всех тест-кейсов набора (вместо глобальных RestAssured.baseURI/basePath)
+	static RequestSpecification spec;
 	
 	/*
 	 * Начальные установки для набора тестов
@@ -32,9 +33,8 @@ class TweetTestSuite {
 	@BeforeAll
 	static void setUp()
 	{
-		//устанавливаем стандартный путь для запросов на взаимодействие с твитами
-		baseURI = "https://api.twitter.com";
-		basePath = "/1.1/statuses";
+		//спецификация запросов набора: адрес API (https://api.twitter.com или локальный заменитель, см. TwitterEndpoints) и путь /1.1/statuses
+		spec = TwitterEndpoints.statusesSpec();
 	}
 	
 	/*
@@ -56,7 +56,7 @@ class TweetTestSuite {
 	{
 		String message = "asa"; 	//отправляемое сообщение
 		
-		Response response = given().
+		Response response = given(spec).
 				param("status", message).									//добавляем пустое сообщение
 				with().
 				post("/update.json");						
@@ -72,18 +72,16 @@ class TweetTestSuite {
 	 * Пустое сообщение не должно появиться в ленте.
 	 * */
 	@Test
-	void testCase02() {
+	void testCase02(TwitterAccount account1) {
 		String message = ""; 	//отправляемое сообщение
 		
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		Response response = given(account1.statusesSpec()).
 				param("status", message).									//добавляем пустое сообщение
 				with().
 				post("/update.json");						
 		
 		response.then().statusCode(HttpStatus.SC_FORBIDDEN);	//отправка сообщения не должна быть успешной, ожидаемый статус ответа 403 Forbidden
-		response.then().body("errors.code", hasItems(170));		//проверяем есть ли в отправленом в ответ JSON сообщение об ошибке с "code" = 170
+		response.then().body(jsonField("errors[*].code", hasItems(170)));		//проверяем есть ли в отправленом в ответ JSON сообщение об ошибке с "code" = 170
 	}
 	
 	/*
@@ -94,20 +92,18 @@ class TweetTestSuite {
 	 * Сообщение с отправленным символом должно появиться в ленте.
 	 * */
 	@Test
-	void testCase03() {
-		String message = "a";	//отправляемое сообщение
+	void testCase03(TwitterAccount account1) {
+		String message = UniqueMessages.single();	//отправляемое сообщение из одного символа, уникальное в прогоне (см. UniqueMessages)
 		
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		Response response = given(account1.statusesSpec()).
 				param("status", message).									//добавляем сообщение из одного символа
 				with().
 				post("/update.json");						
 		
 		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
+		String id = JsonFields.getString(response, "id_str");		//получаем из ответа присвоенный нашему твиту id
 		
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);	//добавляем твит в сборщик мусора
+		GarbageTweetsHandler.addTweet(id, account1);	//добавляем твит в сборщик мусора
 	}
 	
 	
@@ -119,29 +115,21 @@ class TweetTestSuite {
 	 * ли его "id_str" со "id_str" из JSON, полученного в ответ на отправку сообщения.
 	 * */
 	@Test
-	void testCase04() {
-		String message = "abc";	//отправляемое сообщение
-		String search_request = String.format("find {it.text == '%s'}.id_str", message);
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+	void testCase04(TwitterAccount account1) {
+		String message = UniqueMessages.unique("abc");	//отправляемое сообщение, уникальное в прогоне (см. UniqueMessages)
+		Response response = given(account1.statusesSpec()).
 				param("status", message).									//добавляем сообщение из одного символа
 				with().
 				post("/update.json");		
 		
-		String id = response.jsonPath().get("id_str").toString();			//получаем из ответа присвоенный нашему твиту id
+		String id = JsonFields.getString(response, "id_str");			//получаем из ответа присвоенный нашему твиту id
 		
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);		//добавляем твит в сборщик мусора
+		GarbageTweetsHandler.addTweet(id, account1);		//добавляем твит в сборщик мусора
 		
-		//делаем запрос GET /user_timeline.json и ищем отправленный твит
-		given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
-		param("screen_name", authData.consumer_1_Name).									
-		with().
-		get("/user_timeline.json").
-		then().
-		body(search_request, equalTo(id));		//ищем в ответие первый твит содержащий такой же текст что и в message, и если id_str совпадает, то твит добавился в ленту.
+		//догружаем ленту запросами GET /user_timeline.json, пока отправленный твит не появится в ней (см. TimelineCache, Eventually)
+		//ищем в ленте твиты с таким же текстом что и в message, и если среди них есть наш id_str, то твит добавился в ленту.
+		TimelineCache timeline = TimelineCache.of(account1);
+		Eventually.await("tweet " + id + " with text '" + message + "' in timeline", () -> timeline.idsWithText(message).contains(id));
 	}
 	
 	/*
@@ -149,25 +137,18 @@ class TweetTestSuite {
 	 * Проверяем в кейсе возможность отправки такого сообщения.
 	 */
 	@Test
-	void testCase05() throws IOException {
-		String fileName = "longTweet.txt";											//файл src/test/resources с тестовой строкой на 285 символов
-		ClassLoader classloader = Thread.currentThread().getContextClassLoader();	
-		InputStream is = classloader.getResourceAsStream(fileName);
-		String message = new String(IOUtils.toByteArray(is)).substring(0, 280);		//считываем InputStream массив байтов, преобразуем в строку,
-																					//выделяем полстроку длиной 280 символов и формируем 
-																					//отправляемое сообщение нужной длины
-		is.close();
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+	void testCase05(TwitterAccount account1) throws IOException {
+		String message = UniqueMessages.sameLength(TestResources.text("longTweet.txt", 280));		//первые 280 символов тестовой строки из src/test/resources/longTweet.txt (285 символов),
+																																							//конец которых заменён уникальной меткой той же длины
+		Response response = given(account1.statusesSpec()).
 				param("status", message).								//добавляем сообщение из 280 символов
 				with().
 				post("/update.json");						
 		
 		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
+		String id = JsonFields.getString(response, "id_str");		//получаем из ответа присвоенный нашему твиту id
 		
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);	//добавляем твит в сборщик мусора
+		GarbageTweetsHandler.addTweet(id, account1);	//добавляем твит в сборщик мусора
 	}
 	
 	
@@ -176,36 +157,28 @@ class TweetTestSuite {
 	 * Проверяем в кейсе возможность не урезается ли сообщение максимальной длины после постинга.
 	 */
 	@Test
-	void testCase06() throws IOException {
-		String fileName = "longTweet.txt";											//файл src/test/resources с тестовой строкой на 285 символов
-		ClassLoader classloader = Thread.currentThread().getContextClassLoader();	
-		InputStream is = classloader.getResourceAsStream(fileName);
-		String message = new String(IOUtils.toByteArray(is)).substring(0, 280);		//считываем InputStream массив байтов, преобразуем в строку,
-																					//выделяем полстроку длиной 280 символов и формируем 
-																					//отправляемое сообщение нужной длины
-		is.close();
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+	void testCase06(TwitterAccount account1) throws IOException {
+		String message = UniqueMessages.sameLength(TestResources.text("longTweet.txt", 280));		//первые 280 символов тестовой строки из src/test/resources/longTweet.txt (285 символов),
+																																							//конец которых заменён уникальной меткой той же длины
+		Response response = given(account1.statusesSpec()).
 				param("status", message).								//добавляем сообщение из 280 символов
 				with().
 				post("/update.json");						
 		
 		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
+		String id = JsonFields.getString(response, "id_str");		//получаем из ответа присвоенный нашему твиту id
 		
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);	//добавляем твит в сборщик мусора
+		GarbageTweetsHandler.addTweet(id, account1);	//добавляем твит в сборщик мусора
 				
 		//получаем твит с нужным id с помощью GET /show.json, передавая в него id созданного до этого твита
 		//в ответном JSON поле "text" должно в себе содержать всё сообщение, отправленное в message
-		given().
-		auth().oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		given(account1.statusesSpec()).
 		param("id", id).
 		param("tweet_mode", "extended").		//параметр tweet_mode=extended для того чтобы в полученном в ответе JSON сообщение не было свёрнуто до 115 символов и ссылки
 		when().
 		get("/show.json").
 		then().
-		body("full_text", equalTo(message));
+		body(jsonField("full_text", equalTo(message)));
 	}
 	/*
 	 * Максимальная длина сообщения для отправки равна 280 символов.
@@ -215,23 +188,16 @@ class TweetTestSuite {
 	 * {errors:[{"code":186,"Message":"some_error_message"}]}
 	 */
 	@Test
-	void testCase07() throws IOException {
-		String fileName = "longTweet.txt";											//файл src/test/resources с тестовой строкой на 285 символов
-		ClassLoader classloader = Thread.currentThread().getContextClassLoader();	
-		InputStream is = classloader.getResourceAsStream(fileName);
-		String message = new String(IOUtils.toByteArray(is)).substring(0, 281);		//считываем InputStream массив байтов, преобразуем в строку,
-																					//выделяем полстроку длиной 281 символов и формируем 
-																					//отправляемое сообщение нужной длины
-		is.close();
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+	void testCase07(TwitterAccount account1) throws IOException {
+		String message = UniqueMessages.sameLength(TestResources.text("longTweet.txt", 281));		//первые 281 символов тестовой строки из src/test/resources/longTweet.txt (285 символов),
+																																							//конец которых заменён уникальной меткой той же длины
+		Response response = given(account1.statusesSpec()).
 				param("status", message).								//добавляем сообщение из 281 символов
 				with().
 				post("/update.json");						
 		
 		response.then().statusCode(HttpStatus.SC_FORBIDDEN);			//отправка сообщения не должна быть успешной, ожидаемый статус ответа 403 FORBIDDEN
-		response.then().body("errors.code", hasItems(186));				//в JSON, получаемом в ответ, должна быть ошибка с кодом 186
+		response.then().body(jsonField("errors[*].code", hasItems(186)));				//в JSON, получаемом в ответ, должна быть ошибка с кодом 186
 	}
 	
 	/*
@@ -242,29 +208,25 @@ class TweetTestSuite {
 	 * {"errors":[{"code":187,"message":"Status is a duplicate."}]}
 	 * */
 	@Test
-	void testCase08() {
-		String message = "a";	//отправляемое сообщение
+	void testCase08(TwitterAccount account1) {
+		String message = UniqueMessages.single();	//отправляемое сообщение из одного символа, уникальное в прогоне (см. UniqueMessages)
 		
-		Response response = given().
-				auth().
-				oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		Response response = given(account1.statusesSpec()).
 				param("status", message).									//добавляем сообщение из одного символа
 				with().
 				post("/update.json");						
 		
 		response.then().statusCode(HttpStatus.SC_OK);					//отправка сообщения должна быть успешной, ожидаемый статус ответа 200 OK
-		String id = response.jsonPath().get("id_str").toString();		//получаем из ответа присвоенный нашему твиту id
+		String id = JsonFields.getString(response, "id_str");		//получаем из ответа присвоенный нашему твиту id
 		
-		GarbageTweetsHandler.addTweet(id, authData.consumer_1_Name);	//добавляем твит в сборщик мусора
+		GarbageTweetsHandler.addTweet(id, account1);	//добавляем твит в сборщик мусора
 		
 		//попытка повторно отправить твит с тем же сообщением
-		response = given().
-		auth().
-		oauth(authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret, OAuthSignature.HEADER).
+		response = given(account1.statusesSpec()).
 		param("status", message).									//добавляем сообщение из одного символа
 		with().
 		post("/update.json");
 		response.then().statusCode(HttpStatus.SC_FORBIDDEN);		//отправка сообщения не должна быть успешной, ожидаемый статус ответа 403 FORBIDDEN
-		response.then().body("errors.code", hasItems(187));			//в JSON, получаемом в ответ, должна быть ошибка с кодом 187
+		response.then().body(jsonField("errors[*].code", hasItems(187)));			//в JSON, получаемом в ответ, должна быть ошибка с кодом 187
 	}
 }
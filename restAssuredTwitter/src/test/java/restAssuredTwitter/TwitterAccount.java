@@ -0,0 +1,122 @@
+package restAssuredTwitter;
+
+import java.util.Map;
+
+import com.github.scribejava.apis.TwitterApi;
+import com.github.scribejava.core.builder.ServiceBuilder;
+import com.github.scribejava.core.model.OAuth1AccessToken;
+import com.github.scribejava.core.model.OAuthRequest;
+import com.github.scribejava.core.model.Verb;
+import com.github.scribejava.core.oauth.OAuth10aService;
+
+import io.restassured.authentication.OAuthSignature;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
+
+import static io.restassured.RestAssured.oauth;
+
+/*
+ * Тестовый аккаунт: имя и данные для авторизации.
+ * Для каждого аккаунта один раз строятся спецификации запросов, в которые уже входит авторизация OAuth
+ * вместе с адресом API, путём, ожидаемым форматом ответа (JSON) и общим пулом соединений (см. TwitterEndpoints).
+ * Запросы аккаунта проходят через RateLimitScheduler, который следит за ограничениями Twitter на число запросов.
+ * Поэтому в тест-кейсах вместо given(spec).auth().oauth(ключ, секрет, токен, секрет_токена, ...) достаточно написать given(account.statusesSpec()).
+ * Запросы AsyncTwitterClient идут мимо REST Assured и подписываются здесь же, в authorization(), той же библиотекой scribejava.
+ * Объекты аккаунтов создаются только в TwitterAccounts, а сравнивать их можно по ссылке.
+ * */
+
+public final class TwitterAccount {
+	private final String name;
+	private final String consumerKey;
+	private final String consumerSecret;
+	private final String accessToken;
+	private final String accessSecret;
+
+	//спецификации запросов аккаунта, создаются при первом обращении
+	private RequestSpecification statusesSpec;
+	private RequestSpecification mediaSpec;
+	//подпись OAuth для AsyncTwitterClient, создаётся при первом обращении
+	private OAuth10aService oauthService;
+
+	TwitterAccount(String name, String consumerKey, String consumerSecret, String accessToken, String accessSecret)
+	{
+		this.name = name;
+		this.consumerKey = consumerKey;
+		this.consumerSecret = consumerSecret;
+		this.accessToken = accessToken;
+		this.accessSecret = accessSecret;
+	}
+
+	//имя аккаунта (screen_name)
+	public String getName()
+	{
+		return name;
+	}
+
+	//токен доступа, по которому Twitter определяет автора запроса
+	public String getAccessToken()
+	{
+		return accessToken;
+	}
+
+	//авторизованные запросы к твитам: {apiUri}/1.1/statuses
+	public synchronized RequestSpecification statusesSpec()
+	{
+		if(statusesSpec == null)
+			statusesSpec = authorized(TwitterEndpoints.statusesSpec());
+		return statusesSpec;
+	}
+
+	//авторизованные запросы для загрузки медиа-файлов: {uploadUri}/1.1/media
+	public synchronized RequestSpecification mediaSpec()
+	{
+		if(mediaSpec == null)
+			mediaSpec = authorized(TwitterEndpoints.mediaSpec());
+		return mediaSpec;
+	}
+
+	/*
+	 * Заголовок Authorization для запроса AsyncTwitterClient: url - без строки запроса,
+	 * params - параметры строки запроса (GET) или формы application/x-www-form-urlencoded (POST), они входят в подпись.
+	 * Части multipart/form-data в подпись не входят, для таких запросов params пустой.
+	 * */
+	String authorization(Verb verb, String url, Map<String, String> params)
+	{
+		OAuth10aService service = oauthService();
+		OAuthRequest request = new OAuthRequest(verb, url, service);
+		for(Map.Entry<String, String> param : params.entrySet())
+		{
+			if(verb == Verb.GET)
+				request.addQuerystringParameter(param.getKey(), param.getValue());
+			else
+				request.addBodyParameter(param.getKey(), param.getValue());
+		}
+		service.signRequest(new OAuth1AccessToken(accessToken, accessSecret), request);
+		return request.getHeaders().get("Authorization");
+	}
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+
+	private RequestSpecification authorized(RequestSpecification endpoint)
+	{
+		//ожидание квоты (RateLimitScheduler) стоит раньше фильтров endpoint, чтоб не попадать во время ответа (LatencyHistograms)
+		return new RequestSpecBuilder().
+				addFilter(RateLimitScheduler.filter(this)).
+				addRequestSpecification(endpoint).
+				setAccept(ContentType.JSON).
+				setAuth(oauth(consumerKey, consumerSecret, accessToken, accessSecret, OAuthSignature.HEADER)).
+				build();
+	}
+
+	private synchronized OAuth10aService oauthService()
+	{
+		if(oauthService == null)
+			oauthService = new ServiceBuilder().apiKey(consumerKey).apiSecret(consumerSecret).build(TwitterApi.instance());
+		return oauthService;
+	}
+}
@@ -0,0 +1,90 @@
+package restAssuredTwitter;
+
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+/*
+ * Расширение JUnit, которое выдаёт тест-кейсу собственные тестовые аккаунты.
+ * Подключается к набору тестов через @ExtendWith(TwitterAccountExtension.class), после чего тест-кейс получает аккаунты параметрами:
+ *   @Test
+ *   void testCase04(TweetFixture tweet, TwitterAccount account2)
+ * Все аккаунты тест-кейса разные: на каждый параметр TwitterAccount - свой аккаунт, а если у тест-кейса есть параметры TweetFixture,
+ * то ещё один - автор этих твитов (см. TweetFixtureExtension): свободный аккаунт, у которого в TweetFixturePool есть твиты. Аккаунты берутся из TwitterAccounts.lease одним вызовом,
+ * чтоб два тест-кейса не захватили по половине нужных им аккаунтов, и возвращаются в пул, когда тест-кейс (вместе с @AfterEach) завершится.
+ * Пока аккаунт выдан, параллельные тест-кейсы его не получают: они не делят одну ленту и одну квоту запросов,
+ * а если свободных аккаунтов нет, ждут.
+ * После набора тестов (@AfterAll) одним пакетом проверяется, что удалённых тест-кейсами твитов больше нет (GarbageTweetsHandler.verifyDeleted):
+ * если удаление не подтвердилось, набор тестов падает.
+ * */
+
+public class TwitterAccountExtension implements ParameterResolver, AfterAllCallback {
+	private static final Namespace NAMESPACE = Namespace.create(TwitterAccountExtension.class);
+
+	@Override
+	public void afterAll(ExtensionContext context)
+	{
+		GarbageTweetsHandler.verifyDeleted();
+	}
+
+	@Override
+	public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+	{
+		return parameterContext.getParameter().getType() == TwitterAccount.class;
+	}
+
+	@Override
+	public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext)
+	{
+		//номер среди параметров TwitterAccount; место 0 занимает автор твитов, если они есть
+		Parameter[] parameters = parameterContext.getDeclaringExecutable().getParameters();
+		int slot = hasFixtures(parameterContext.getDeclaringExecutable()) ? 1 : 0;
+		for(int i = 0; i < parameterContext.getIndex(); i++)
+		{
+			if(parameters[i].getType() == TwitterAccount.class)
+				slot++;
+		}
+		return lease(extensionContext).get(slot);
+	}
+
+	//автор твитов TweetFixture тест-кейса
+	static TwitterAccount fixtureAuthor(ExtensionContext context)
+	{
+		return lease(context).get(0);
+	}
+
+	//аренда аккаунтов тест-кейса, берётся при первом обращении и закрывается вместе с его контекстом
+	private static AccountLease lease(ExtensionContext context)
+	{
+		Method method = context.getRequiredTestMethod();
+		return context.getStore(NAMESPACE).getOrComputeIfAbsent("lease",
+				key -> TwitterAccounts.lease(accountsNeeded(method), hasFixtures(method) ? TweetFixturePool::hasTweets : account -> false), AccountLease.class);
+	}
+
+	private static int accountsNeeded(Method method)
+	{
+		int count = hasFixtures(method) ? 1 : 0;
+		for(Parameter parameter : method.getParameters())
+		{
+			if(parameter.getType() == TwitterAccount.class)
+				count++;
+		}
+		return count;
+	}
+
+	private static boolean hasFixtures(Executable method)
+	{
+		for(Parameter parameter : method.getParameters())
+		{
+			if(parameter.getType() == TweetFixture.class)
+				return true;
+		}
+		return false;
+	}
+}
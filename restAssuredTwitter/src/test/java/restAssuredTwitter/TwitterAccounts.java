@@ -0,0 +1,209 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/*
+ * Реестр тестовых аккаунтов.
+ * Аккаунты создаются один раз при загрузке класса, дальше тест-кейсы работают с объектами TwitterAccount:
+ *   lease(n)    - n разных аккаунтов, которые на время теста не выдаются другим тест-кейсам (см. TwitterAccountExtension);
+ *   byName(name) - поиск аккаунта по имени (например, для твитов из GarbageJournal, где автор записан строкой);
+ *   all()       - все аккаунты.
+ * Каждый аккаунт - это отдельная квота Twitter на число запросов и отдельная лента, поэтому чем больше аккаунтов,
+ * тем больше тест-кейсов могут работать параллельно, не мешая друг другу.
+ * Откуда берутся аккаунты (первый найденный источник):
+ *   1) файл из системного свойства twitter.accounts или переменной окружения TWITTER_ACCOUNTS;
+ *   2) переменные окружения TWITTER_ACCOUNT_1_NAME, TWITTER_ACCOUNT_1_CONSUMER_KEY, ..._CONSUMER_SECRET, ..._ACCESS_TOKEN, ..._ACCESS_SECRET,
+ *      затем TWITTER_ACCOUNT_2_..., пока есть _NAME;
+ *   3) два аккаунта из AuthorizationDataStorage.
+ * Формат файла (properties), номера идут подряд с 1:
+ *   account.1.name=Dum_muD1
+ *   account.1.consumerKey=...
+ *   account.1.consumerSecret=...
+ *   account.1.accessToken=...
+ *   account.1.accessSecret=...
+ * Для локального заменителя можно добавить сгенерированные аккаунты: twitter.local.accounts=N дополняет список до N аккаунтов
+ * (local_user_3, local_user_4, ...), настоящий Twitter их, конечно, не знает.
+ * */
+
+public class TwitterAccounts {
+	public static final String ACCOUNTS_PROPERTY = "twitter.accounts";
+	public static final String LOCAL_ACCOUNTS_PROPERTY = "twitter.local.accounts";
+
+	private static final List<TwitterAccount> accounts = Collections.unmodifiableList(load());
+	//имя аккаунта -> аккаунт
+	private static final Map<String, TwitterAccount> byName = index(accounts);
+
+	//аккаунты, выданные тест-кейсам; изменяется и проверяется под монитором leased
+	private static final Set<TwitterAccount> leased = new HashSet<TwitterAccount>();
+
+	public static List<TwitterAccount> all()
+	{
+		return accounts;
+	}
+
+	//аккаунт с именем name или null, если такого аккаунта нет
+	public static TwitterAccount byName(String name)
+	{
+		return byName.get(name);
+	}
+
+	/*
+	 * Выдаём count разных аккаунтов, не выданных сейчас другим тест-кейсам, и ждём, если свободных меньше count.
+	 * Аккаунты выдаются в порядке списка, поэтому при последовательном прогоне тест-кейс получает первые аккаунты.
+	 * Выданные аккаунты возвращаются в пул через AccountLease.close().
+	 * */
+	public static AccountLease lease(int count)
+	{
+		return lease(count, account -> false);
+	}
+
+	/*
+	 * То же, но первым выдаётся свободный аккаунт, для которого выполняется preferred, если такой есть; остальные - в порядке списка.
+	 * Так автором твитов TweetFixture становится аккаунт, у которого в TweetFixturePool уже есть твиты (см. TwitterAccountExtension).
+	 * */
+	public static AccountLease lease(int count, Predicate<TwitterAccount> preferred)
+	{
+		if(count > accounts.size())
+			throw new IllegalArgumentException("Test needs " + count + " distinct accounts, but only " + accounts.size()
+					+ " are configured (see " + ACCOUNTS_PROPERTY + " and " + LOCAL_ACCOUNTS_PROPERTY + ")");
+		List<TwitterAccount> taken = new ArrayList<TwitterAccount>(count);
+		synchronized(leased)
+		{
+			while(accounts.size() - leased.size() < count)
+			{
+				try {
+					leased.wait();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for " + count + " free accounts", e);
+				}
+			}
+			for(TwitterAccount account : accounts)
+			{
+				if(count > 0 && !leased.contains(account) && preferred.test(account))
+				{
+					leased.add(account);
+					taken.add(account);
+					break;
+				}
+			}
+			for(TwitterAccount account : accounts)
+			{
+				if(taken.size() == count)
+					break;
+				if(leased.add(account))
+					taken.add(account);
+			}
+		}
+		return new AccountLease(taken);
+	}
+
+	//возвращаем аккаунты в пул
+	static void release(List<TwitterAccount> accounts)
+	{
+		synchronized(leased)
+		{
+			leased.removeAll(accounts);
+			leased.notifyAll();
+		}
+	}
+
+	private static List<TwitterAccount> load()
+	{
+		List<TwitterAccount> loaded = new ArrayList<TwitterAccount>();
+		String file = System.getProperty(ACCOUNTS_PROPERTY, System.getenv("TWITTER_ACCOUNTS"));
+		if(file != null && !file.isEmpty())
+			loaded.addAll(fromFile(file));
+		else
+			loaded.addAll(fromEnvironment());
+		if(loaded.isEmpty())
+		{
+			AuthorizationDataStorage authData = new AuthorizationDataStorage();
+			loaded.add(new TwitterAccount(authData.consumer_1_Name,
+					authData.consumer_1_Key, authData.consumer_1_Secret, authData.application_Token, authData.application_Secret));
+			loaded.add(new TwitterAccount(authData.consumer_2_Name,
+					authData.consumer_2_Key, authData.consumer_2_Secret, authData.application_Token_2, authData.application_Secret_2));
+		}
+
+		//сгенерированные аккаунты для локального заменителя, id пользователя берётся из токена (см. LocalTweetStore.addAccount)
+		int local = Integer.getInteger(LOCAL_ACCOUNTS_PROPERTY, 0);
+		if(local > loaded.size() && TwitterEndpoints.isLocal())
+		{
+			for(int i = loaded.size() + 1; i <= local; i++)
+				loaded.add(new TwitterAccount("local_user_" + i, "local-key-" + i, "local-secret-" + i, i + "-local", "local-token-secret-" + i));
+		}
+		return loaded;
+	}
+
+	private static List<TwitterAccount> fromFile(String file)
+	{
+		Properties properties = new Properties();
+		try(InputStream is = Files.newInputStream(Paths.get(file))) {
+			properties.load(is);
+		} catch(IOException e) {
+			throw new UncheckedIOException("Unable to read accounts file " + file, e);
+		}
+		List<TwitterAccount> loaded = new ArrayList<TwitterAccount>();
+		for(int i = 1; properties.getProperty("account." + i + ".name") != null; i++)
+		{
+			String prefix = "account." + i + ".";
+			loaded.add(new TwitterAccount(properties.getProperty(prefix + "name"), required(properties, prefix + "consumerKey", file),
+					required(properties, prefix + "consumerSecret", file), required(properties, prefix + "accessToken", file),
+					required(properties, prefix + "accessSecret", file)));
+		}
+		if(loaded.isEmpty())
+			throw new IllegalArgumentException("No accounts in " + file + " (expected account.1.name, account.1.consumerKey, ...)");
+		return loaded;
+	}
+
+	private static List<TwitterAccount> fromEnvironment()
+	{
+		Map<String, String> environment = System.getenv();
+		List<TwitterAccount> loaded = new ArrayList<TwitterAccount>();
+		for(int i = 1; environment.get("TWITTER_ACCOUNT_" + i + "_NAME") != null; i++)
+		{
+			String prefix = "TWITTER_ACCOUNT_" + i + "_";
+			loaded.add(new TwitterAccount(environment.get(prefix + "NAME"), required(environment, prefix + "CONSUMER_KEY"),
+					required(environment, prefix + "CONSUMER_SECRET"), required(environment, prefix + "ACCESS_TOKEN"),
+					required(environment, prefix + "ACCESS_SECRET")));
+		}
+		return loaded;
+	}
+
+	private static String required(Properties properties, String key, String file)
+	{
+		String value = properties.getProperty(key);
+		if(value == null)
+			throw new IllegalArgumentException("Missing " + key + " in " + file);
+		return value;
+	}
+
+	private static String required(Map<String, String> environment, String name)
+	{
+		String value = environment.get(name);
+		if(value == null)
+			throw new IllegalArgumentException("Missing environment variable " + name);
+		return value;
+	}
+
+	private static Map<String, TwitterAccount> index(List<TwitterAccount> accounts)
+	{
+		Map<String, TwitterAccount> index = new LinkedHashMap<String, TwitterAccount>();
+		for(TwitterAccount account : accounts)
+			index.put(account.getName(), account);
+		return Collections.unmodifiableMap(index);
+	}
+}
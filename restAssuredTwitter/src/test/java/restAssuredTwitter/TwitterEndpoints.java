@@ -0,0 +1,162 @@
+package restAssuredTwitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.specification.RequestSpecification;
+
+/*
+ * Класс, который определяет, с каким API работают наборы тестов.
+ * Выбор делается системным свойством twitter.target:
+ *   local - встроенный заменитель LocalTwitterServer, поднимается один раз на всю JVM (значение по умолчанию);
+ *   real  - настоящие https://api.twitter.com и https://upload.twitter.com.
+ * Пример: mvn test -Dtwitter.target=real
+ * Дополнительные свойства (нужны, например, для нагрузочного прогона через прокси, см. LoadDriver):
+ *   twitter.baseUri    - адрес, на который отправляются все запросы вместо адреса выбранного API (например, прокси перед ним);
+ *   twitter.local.port - порт локального заменителя (по умолчанию любой свободный);
+ *   twitter.local.rateLimit, twitter.local.rateLimitWindowSeconds - ограничение числа запросов в локальном заменителе
+ *                        (по умолчанию 100000 запросов за 900 секунд на пользователя и запрос API, см. LocalTwitterServer.setRateLimit).
+ * Свойство twitter.cassette (record/replay) включает запись обмена с выбранным API в файл и воспроизведение из него (см. Cassette).
+ * При воспроизведении запросы никуда не отправляются, и локальный заменитель не поднимается.
+ * Вместо глобальных RestAssured.baseURI/basePath наборы тестов берут отсюда неизменяемые спецификации запросов
+ * statusesSpec() и mediaSpec(), поэтому наборы можно выполнять параллельно.
+ * Все запросы через эти спецификации используют общий пул соединений HttpConnectionPool, а их время записывается в LatencyHistograms.
+ * У адресов api (твиты) и upload (медиа-файлы) свои таймауты (см. HttpConnectionPool.httpClientConfig) и свой CircuitBreaker,
+ * который при недоступности адреса отклоняет запросы к нему, не дожидаясь таймаутов.
+ * Авторизованные спецификации каждого аккаунта строятся на их основе в TwitterAccount.
+ * */
+
+public class TwitterEndpoints {
+	//имя системного свойства и его значения
+	public static final String TARGET_PROPERTY = "twitter.target";
+	public static final String TARGET_LOCAL = "local";
+	public static final String TARGET_REAL = "real";
+	public static final String BASE_URI_PROPERTY = "twitter.baseUri";
+	public static final String LOCAL_PORT_PROPERTY = "twitter.local.port";
+	public static final String LOCAL_RATE_LIMIT_PROPERTY = "twitter.local.rateLimit";
+	public static final String LOCAL_RATE_LIMIT_WINDOW_PROPERTY = "twitter.local.rateLimitWindowSeconds";
+
+	//имена адресов API для таймаутов и CircuitBreaker
+	public static final String API_ENDPOINT = "api";
+	public static final String UPLOAD_ENDPOINT = "upload";
+	//пути к запросам для работы с твитами и с медиа-файлами
+	public static final String STATUSES_PATH = "/1.1/statuses";
+	public static final String MEDIA_PATH = "/1.1/media";
+
+	private static final String REAL_API_URI = "https://api.twitter.com";
+	private static final String REAL_UPLOAD_URI = "https://upload.twitter.com";
+	//адрес при воспроизведении кассеты: запросы до него не доходят
+	private static final String REPLAY_URI = "http://cassette.invalid";
+
+	//локальный сервер, создаётся при первом обращении
+	private static LocalTwitterServer localServer;
+	//общие спецификации запросов, создаются при первом обращении
+	private static RequestSpecification statusesSpec;
+	private static RequestSpecification mediaSpec;
+
+	//работаем ли мы с локальным заменителем
+	public static boolean isLocal()
+	{
+		String target = System.getProperty(TARGET_PROPERTY, TARGET_LOCAL);
+		if(target.equalsIgnoreCase(TARGET_LOCAL))
+			return true;
+		if(target.equalsIgnoreCase(TARGET_REAL))
+			return false;
+		throw new IllegalArgumentException("Unknown " + TARGET_PROPERTY + " value: " + target + " (expected " + TARGET_LOCAL + " or " + TARGET_REAL + ")");
+	}
+
+	//имя цели для файлов прогона (журнал мусора, сводка времени запросов): local, real или replay
+	public static String targetName()
+	{
+		if(Cassette.isReplaying())
+			return Cassette.MODE_REPLAY;
+		return isLocal() ? TARGET_LOCAL : TARGET_REAL;
+	}
+
+	//адрес API для работы с твитами (вместо https://api.twitter.com)
+	public static String apiUri()
+	{
+		if(Cassette.isReplaying())
+			return REPLAY_URI;
+		return System.getProperty(BASE_URI_PROPERTY, isLocal() ? localServer().getBaseUri() : REAL_API_URI);
+	}
+
+	//адрес API для загрузки медиа-файлов (вместо https://upload.twitter.com)
+	public static String uploadUri()
+	{
+		if(Cassette.isReplaying())
+			return REPLAY_URI;
+		return System.getProperty(BASE_URI_PROPERTY, isLocal() ? localServer().getBaseUri() : REAL_UPLOAD_URI);
+	}
+
+	//спецификация запросов для работы с твитами: {apiUri}/1.1/statuses
+	public static synchronized RequestSpecification statusesSpec()
+	{
+		if(statusesSpec == null)
+			statusesSpec = endpointSpec(API_ENDPOINT, apiUri(), STATUSES_PATH);
+		return statusesSpec;
+	}
+
+	//спецификация запросов для загрузки медиа-файлов: {uploadUri}/1.1/media
+	public static synchronized RequestSpecification mediaSpec()
+	{
+		if(mediaSpec == null)
+			mediaSpec = endpointSpec(UPLOAD_ENDPOINT, uploadUri(), MEDIA_PATH);
+		return mediaSpec;
+	}
+
+	/*
+	 * Отклонённый выключателем запрос (CircuitBreaker стоит первым) не попадает во время ответа, время остальных записывается в LatencyHistograms,
+	 * а кассета (если включена) стоит последней и при воспроизведении сама отвечает на запрос.
+	 * */
+	private static RequestSpecification endpointSpec(String endpoint, String baseUri, String basePath)
+	{
+		RequestSpecBuilder builder = new RequestSpecBuilder().setBaseUri(baseUri).setBasePath(basePath).setConfig(config(endpoint)).
+				addFilter(CircuitBreaker.filter(endpoint)).addFilter(LatencyHistograms.filter());
+		if(Cassette.isEnabled())
+			builder.addFilter(Cassette.filter());
+		return builder.build();
+	}
+
+	//настройки REST Assured для запросов к адресу endpoint: общий пул соединений и таймауты адреса
+	private static RestAssuredConfig config(String endpoint)
+	{
+		return RestAssuredConfig.config().httpClient(HttpConnectionPool.httpClientConfig(endpoint));
+	}
+
+	//останавливаем локальный сервер, если он был запущен (для запусков вне JUnit, например LoadDriver)
+	public static synchronized void stopLocalServer()
+	{
+		if(localServer != null)
+			localServer.stop();
+	}
+
+	/*
+	 * Поднимаем локальный сервер и регистрируем в нём все тестовые аккаунты (см. TwitterAccounts).
+	 * Сервер останавливается вместе с JVM.
+	 * */
+	private static synchronized LocalTwitterServer localServer()
+	{
+		if(localServer == null)
+		{
+			LocalTweetStore store = new LocalTweetStore();
+			for(TwitterAccount account : TwitterAccounts.all())
+				store.addAccount(account.getName(), account.getAccessToken());
+
+			LocalTwitterServer server = new LocalTwitterServer(store);
+			server.setRateLimit(Integer.getInteger(LOCAL_RATE_LIMIT_PROPERTY, 100000),
+					TimeUnit.SECONDS.toMillis(Long.getLong(LOCAL_RATE_LIMIT_WINDOW_PROPERTY, 900)));
+			try {
+				server.start(Integer.getInteger(LOCAL_PORT_PROPERTY, 0));
+			} catch(IOException e) {
+				throw new UncheckedIOException("Unable to start local Twitter server", e);
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+			localServer = server;
+		}
+		return localServer;
+	}
+}
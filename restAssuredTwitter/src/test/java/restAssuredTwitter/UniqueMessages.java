@@ -0,0 +1,71 @@
+package restAssuredTwitter;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Уникальные тексты твитов. Twitter не даёт запостить тот же текст, что уже есть в ленте (ошибка 187 "Status is a duplicate."),
+ * поэтому фиксированные тексты ("abc", "a #b") ломают параллельные тест-кейсы с одним аккаунтом и повторный прогон,
+ * если твиты прошлого ещё не удалены. Здесь к тексту добавляется короткая метка: метка прогона (6 случайных символов [0-9a-z] на JVM)
+ * и номер сообщения (общий счётчик всех потоков, поэтому параллельные тест-кейсы не получат одну метку).
+ *   unique(text)      - text + " " + метка: начало текста не меняется, поэтому позиции хэштэгов (entities.hashtags[].indices) те же,
+ *                       а метка из букв и цифр после пробела не образует ни хэштэга, ни упоминания, ни ссылки;
+ *                       например, "a #b" -> "a #b k3f9a1003";
+ *   sameLength(text)  - конец текста заменяется меткой, длина в символах Unicode (как её считает Twitter) не меняется:
+ *                       для проверок на границе 280 символов;
+ *   single()          - сообщение из одного символа: иероглиф из блока CJK Unified Ideographs (20992 символа),
+ *                       все символы одного прогона разные, пока их меньше 20992, а сдвиг блока у каждого прогона свой.
+ * Тест-кейс, который нарочно отправляет дубликат (TweetTestSuite.testCase08), просто отправляет один и тот же уникальный текст дважды.
+ * */
+
+public class UniqueMessages {
+	private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyz";
+	private static final int CJK_FIRST = 0x4E00;
+	private static final int CJK_COUNT = 0x9FFF - CJK_FIRST + 1;
+
+	private static final SecureRandom random = new SecureRandom();
+	//метка прогона
+	private static final String RUN = randomToken(6);
+	//сдвиг single() для этого прогона
+	private static final int SINGLE_OFFSET = random.nextInt(CJK_COUNT);
+	//номер сообщения в прогоне
+	private static final AtomicLong counter = new AtomicLong();
+
+	public static String unique(String text)
+	{
+		return text + " " + token();
+	}
+
+	//text той же длины в символах, конец которого заменён меткой; текст должен быть длиннее метки
+	public static String sameLength(String text)
+	{
+		String token = token();
+		int length = text.codePointCount(0, text.length());
+		if(length <= token.length())
+			throw new IllegalArgumentException("Text of " + length + " characters is too short for a unique " + token.length() + "-character suffix");
+		return text.substring(0, text.offsetByCodePoints(0, length - token.length())) + token;
+	}
+
+	public static String single()
+	{
+		return new String(Character.toChars(CJK_FIRST + (int) ((SINGLE_OFFSET + counter.incrementAndGet()) % CJK_COUNT)));
+	}
+
+	//метка прогона и номер сообщения, не короче 3 символов
+	private static String token()
+	{
+		String number = Long.toString(counter.incrementAndGet(), 36);
+		StringBuilder token = new StringBuilder(RUN.length() + Math.max(number.length(), 3)).append(RUN);
+		for(int i = number.length(); i < 3; i++)
+			token.append('0');
+		return token.append(number).toString();
+	}
+
+	private static String randomToken(int length)
+	{
+		StringBuilder token = new StringBuilder(length);
+		for(int i = 0; i < length; i++)
+			token.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		return token.toString();
+	}
+}